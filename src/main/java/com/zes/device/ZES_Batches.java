@@ -0,0 +1,33 @@
+package com.zes.device;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// ZES_InfluxWriter, ZES_HistoryWriter가 같이 쓰는 크기/시간 기준 batch 모으기
+public final class ZES_Batches
+{
+    private ZES_Batches() {}
+
+    // batchSize가 찰 때까지, 첫 항목부터 최대 flushNanos만큼 모은다. closing이 true면 기다리지 않는다
+    public static <E> void ZES_fill(BlockingQueue<E> queue, List<E> batch, int batchSize, long flushNanos, BooleanSupplier closing) throws InterruptedException
+    {
+        long ZES_lv_deadline = System.nanoTime() + flushNanos;
+        while (batch.size() < batchSize)
+        {
+            queue.drainTo(batch, batchSize - batch.size());
+            long ZES_lv_wait = ZES_lv_deadline - System.nanoTime();
+            if (batch.size() >= batchSize || ZES_lv_wait <= 0 || closing.getAsBoolean())
+            {
+                return;
+            }
+            E ZES_lv_next = queue.poll(ZES_lv_wait, TimeUnit.NANOSECONDS);
+            if (ZES_lv_next == null)
+            {
+                return;
+            }
+            batch.add(ZES_lv_next);
+        }
+    }
+}
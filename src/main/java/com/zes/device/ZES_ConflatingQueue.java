@@ -0,0 +1,326 @@
+package com.zes.device;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// 키(설비)마다 아직 꺼내지 않은 항목을 하나만 두는 큐. 같은 키로 다시 넣으면 기존 항목을 새 값으로 바꾸고 자리는 그대로 둔다.
+// realtime 테이블은 설비마다 마지막 값만 남으므로, DB가 밀려도 큐 길이는 설비 수를 넘지 않고 저장할 때는 항상 최신 값을 쓴다.
+// capacity는 대기 중인 키 수 기준이다. 기존 키의 값을 바꾸는 put은 막히지 않는다.
+public class ZES_ConflatingQueue<K, E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private final Function<? super E, ? extends K> keyOf;
+    private final int capacity;
+    private final HashMap<K, ZES_Node<K, E>> pending = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LongAdder conflated = new LongAdder();
+    // 처음 들어온 순서 (키마다 노드 하나)
+    private ZES_Node<K, E> head;
+    private ZES_Node<K, E> tail;
+
+    public ZES_ConflatingQueue(Function<? super E, ? extends K> keyOf, int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.keyOf = keyOf;
+        this.capacity = capacity;
+    }
+
+    // 새 값으로 바뀌어 저장되지 않은 항목 수
+    public long ZES_getConflated()
+    {
+        return conflated.sum();
+    }
+
+    @Override
+    public boolean offer(E e)
+    {
+        K ZES_lv_key = keyOf.apply(e);
+        lock.lock();
+        try
+        {
+            if (ZES_replace(ZES_lv_key, e))
+            {
+                return true;
+            }
+            if (pending.size() >= capacity)
+            {
+                return false;
+            }
+            ZES_enqueue(ZES_lv_key, e);
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        K ZES_lv_key = keyOf.apply(e);
+        lock.lockInterruptibly();
+        try
+        {
+            while (!ZES_replace(ZES_lv_key, e))
+            {
+                if (pending.size() < capacity)
+                {
+                    ZES_enqueue(ZES_lv_key, e);
+                    return;
+                }
+                notFull.await();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        K ZES_lv_key = keyOf.apply(e);
+        long ZES_lv_nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try
+        {
+            while (!ZES_replace(ZES_lv_key, e))
+            {
+                if (pending.size() < capacity)
+                {
+                    ZES_enqueue(ZES_lv_key, e);
+                    return true;
+                }
+                if (ZES_lv_nanos <= 0)
+                {
+                    return false;
+                }
+                ZES_lv_nanos = notFull.awaitNanos(ZES_lv_nanos);
+            }
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try
+        {
+            while (head == null)
+            {
+                notEmpty.await();
+            }
+            return ZES_dequeue();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long ZES_lv_nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try
+        {
+            while (head == null)
+            {
+                if (ZES_lv_nanos <= 0)
+                {
+                    return null;
+                }
+                ZES_lv_nanos = notEmpty.awaitNanos(ZES_lv_nanos);
+            }
+            return ZES_dequeue();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll()
+    {
+        lock.lock();
+        try
+        {
+            return head == null ? null : ZES_dequeue();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek()
+    {
+        lock.lock();
+        try
+        {
+            return head == null ? null : head.value;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return pending.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        lock.lock();
+        try
+        {
+            return capacity - pending.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        if (c == this)
+        {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try
+        {
+            int ZES_lv_count = 0;
+            while (head != null && ZES_lv_count < maxElements)
+            {
+                c.add(ZES_dequeue());
+                ZES_lv_count++;
+            }
+            return ZES_lv_count;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // 현재 대기 중인 항목의 복사본 (remove 미지원)
+    @Override
+    public Iterator<E> iterator()
+    {
+        lock.lock();
+        try
+        {
+            List<E> ZES_lv_values = new ArrayList<>(pending.size());
+            for (ZES_Node<K, E> ZES_lv_node = head; ZES_lv_node != null; ZES_lv_node = ZES_lv_node.next)
+            {
+                ZES_lv_values.add(ZES_lv_node.value);
+            }
+            return Collections.unmodifiableList(ZES_lv_values).iterator();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // lock 안에서 호출
+    private boolean ZES_replace(K key, E e)
+    {
+        ZES_Node<K, E> ZES_lv_node = pending.get(key);
+        if (ZES_lv_node == null)
+        {
+            return false;
+        }
+        ZES_lv_node.value = e;
+        conflated.increment();
+        return true;
+    }
+
+    private void ZES_enqueue(K key, E e)
+    {
+        ZES_Node<K, E> ZES_lv_node = new ZES_Node<>(key, e);
+        pending.put(key, ZES_lv_node);
+        if (tail == null)
+        {
+            head = ZES_lv_node;
+        }
+        else
+        {
+            tail.next = ZES_lv_node;
+        }
+        tail = ZES_lv_node;
+        notEmpty.signal();
+    }
+
+    private E ZES_dequeue()
+    {
+        ZES_Node<K, E> ZES_lv_node = head;
+        head = ZES_lv_node.next;
+        if (head == null)
+        {
+            tail = null;
+        }
+        pending.remove(ZES_lv_node.key);
+        notFull.signal();
+        return ZES_lv_node.value;
+    }
+
+    private static final class ZES_Node<K, E>
+    {
+        private final K key;
+        private E value;
+        private ZES_Node<K, E> next;
+
+        private ZES_Node(K key, E value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -2,31 +2,65 @@ package com.zes.device;
 
 import com.zes.device.models.ZES_TypeMysqlDB;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
 
+// shard 큐 하나를 맡는 저장 스레드. 쌓인 프레임을 drainTo로 한 번에 꺼내 sink.ZES_saveAll로 묶어 저장한다.
+// batch 크기와 대기 시간은 최근 저장 시간(DB 지연)에 맞춰 조절한다.
 public class ZES_Consumer implements Runnable
 {
     private final BlockingQueue<ZES_TypeMysqlDB> sharedQueue;
+    private final ZES_FrameTypeRegistry.ZES_Sink sink;
     private int threadNo;
-    public ZES_Consumer(BlockingQueue<ZES_TypeMysqlDB> sharedQueue, int threadNo)
+    private final AtomicLong processed = new AtomicLong();
+    // 한 번에 저장할 최대 프레임 수 (1이면 한 건씩 저장)
+    private final int batchMax;
+    // batch를 채우려고 기다리는 최대 시간
+    private final long lingerMaxNanos;
+    // 저장 한 번에 걸리는 시간 목표. 넘으면 batch를 줄이고, 여유가 있으면 늘린다
+    private final long flushTargetNanos;
+    private volatile int batchTarget;
+    private volatile long flushAverageNanos;
+    private final AtomicLong flushes = new AtomicLong();
+
+    public ZES_Consumer(BlockingQueue<ZES_TypeMysqlDB> sharedQueue, ZES_FrameTypeRegistry.ZES_Sink sink, int threadNo, int batchMax, int lingerMaxMillis, int flushTargetMillis)
     {
         this.sharedQueue = sharedQueue;
+        this.sink = sink;
         this.threadNo = threadNo;
+        this.batchMax = Math.max(1, batchMax);
+        this.lingerMaxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMaxMillis));
+        this.flushTargetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushTargetMillis));
+        this.batchTarget = this.batchMax;
     }
 
     @Override
     public void run()
     {
-        int i = 0;
+        List<ZES_TypeMysqlDB> ZES_lv_batch = new ArrayList<>(batchMax);
         while (!Thread.currentThread().isInterrupted())
         {
             try
             {
 //                ZES_gv_logger.info("thread" + threadNo + " out queue : " + sharedQueue.size());
                 ZES_TypeMysqlDB ZES_lv_typeBase = sharedQueue.take(); // Retrieve bytes from the corresponding blocking queue
-                ZES_lv_typeBase.ZES_saveRealTime();
+                if (batchMax == 1)
+                {
+                    sink.ZES_save(ZES_lv_typeBase);
+                    processed.incrementAndGet();
+                    continue;
+                }
+                ZES_lv_batch.add(ZES_lv_typeBase);
+                ZES_fill(ZES_lv_batch);
+                long ZES_lv_started = System.nanoTime();
+                sink.ZES_saveAll(ZES_lv_batch);
+                ZES_adapt(ZES_lv_batch.size(), System.nanoTime() - ZES_lv_started);
+                processed.addAndGet(ZES_lv_batch.size());
             }
             catch (InterruptedException e)
             {
@@ -39,6 +73,68 @@ public class ZES_Consumer implements Runnable
                 ZES_gv_logger.severe("Unexpected error in Consumer thread " + threadNo + ": " + e.getMessage());
                 e.printStackTrace();
             }
+            finally
+            {
+                ZES_lv_batch.clear();
+            }
+        }
+    }
+
+    // 쌓여 있는 프레임을 모두 꺼내고, 모자라면 최근 저장 시간만큼(최대 lingerMax) 더 기다린다.
+    // DB가 느릴수록 저장하는 동안 큐에 쌓이는 양이 많으므로 기다리는 시간도 같이 늘어난다.
+    private void ZES_fill(List<ZES_TypeMysqlDB> batch) throws InterruptedException
+    {
+        int ZES_lv_target = batchTarget;
+        sharedQueue.drainTo(batch, ZES_lv_target - batch.size());
+        long ZES_lv_linger = Math.min(lingerMaxNanos, flushAverageNanos);
+        long ZES_lv_deadline = System.nanoTime() + ZES_lv_linger;
+        while (batch.size() < ZES_lv_target && ZES_lv_linger > 0)
+        {
+            ZES_TypeMysqlDB ZES_lv_next = sharedQueue.poll(ZES_lv_linger, TimeUnit.NANOSECONDS);
+            if (ZES_lv_next == null)
+            {
+                return;
+            }
+            batch.add(ZES_lv_next);
+            sharedQueue.drainTo(batch, ZES_lv_target - batch.size());
+            ZES_lv_linger = ZES_lv_deadline - System.nanoTime();
+        }
+    }
+
+    // 저장 시간이 목표를 넘으면 batch를 절반으로, 꽉 찬 batch를 목표의 절반 안에 저장했으면 1/8씩 늘린다
+    private void ZES_adapt(int size, long elapsedNanos)
+    {
+        flushes.incrementAndGet();
+        long ZES_lv_average = flushAverageNanos;
+        flushAverageNanos = ZES_lv_average == 0 ? elapsedNanos : ZES_lv_average + ((elapsedNanos - ZES_lv_average) >> 3);
+        int ZES_lv_target = batchTarget;
+        if (elapsedNanos > flushTargetNanos && ZES_lv_target > 1)
+        {
+            batchTarget = Math.max(1, ZES_lv_target / 2);
         }
+        else if (size >= ZES_lv_target && elapsedNanos < flushTargetNanos / 2 && ZES_lv_target < batchMax)
+        {
+            batchTarget = Math.min(batchMax, ZES_lv_target + Math.max(1, batchMax >> 3));
+        }
+    }
+
+    public long ZES_getProcessed()
+    {
+        return processed.get();
+    }
+
+    public long ZES_getFlushes()
+    {
+        return flushes.get();
+    }
+
+    public int ZES_getBatchTarget()
+    {
+        return batchTarget;
+    }
+
+    public long ZES_getFlushAverageNanos()
+    {
+        return flushAverageNanos;
     }
 }
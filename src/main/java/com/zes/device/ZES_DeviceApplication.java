@@ -1,11 +1,12 @@
 package com.zes.device;
 
-import com.zes.device.models.ZES_TypeMysqlDB;
+import com.zes.device.config.ZES_IngestConfig;
 
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -14,8 +15,6 @@ import java.util.logging.Logger;
 public class ZES_DeviceApplication
 {
     public static final Logger ZES_gv_logger = Logger.getGlobal();
-    private static final int ZES_gv_NUM_PRODUCER_THREADS = 1;
-    private static final int ZES_gv_NUM_CONSUMER_THREADS = 5;
 
     public static void main(String[] args) throws IOException
     {
@@ -35,30 +34,68 @@ public class ZES_DeviceApplication
             System.exit(1);
         }
 
-        BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queueType0 = new ArrayBlockingQueue<>(1000);
-        BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queueType1 = new ArrayBlockingQueue<>(1000);
-        BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queueType2 = new ArrayBlockingQueue<>(1000);
-        BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queueType3 = new ArrayBlockingQueue<>(1000);
-        BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queueType4 = new ArrayBlockingQueue<>(1000);
-        ExecutorService ZES_lv_producerThreadPool = Executors.newFixedThreadPool(ZES_gv_NUM_PRODUCER_THREADS);
-        ExecutorService ZES_lv_consumerThreadPool = Executors.newFixedThreadPool(ZES_gv_NUM_CONSUMER_THREADS);
+        ZES_IngestConfig ZES_lv_ingestConfig = ZES_IngestConfig.ZES_fromEnvironment();
+        ExecutorService ZES_lv_producerThreadPool = Executors.newFixedThreadPool(ZES_lv_ingestConfig.ZES_getAcceptors());
+        ZES_StatsReporter ZES_lv_statsReporter = ZES_StatsReporter.ZES_fromEnvironment();
 
-        ServerSocket ZES_lv_serverSocket = new ServerSocket(ZES_lv_LISTENING_PORT, 1024);
-        for (int i = 0; i < ZES_gv_NUM_PRODUCER_THREADS; i++)
+        ZES_Pipeline ZES_lv_pipeline = ZES_Pipeline.ZES_fromEnvironment();
+        ZES_lv_pipeline.ZES_start();
+        ZES_lv_statsReporter.ZES_register("pipeline", ZES_lv_pipeline::ZES_stats);
+        ZES_NioIngestServer ZES_lv_nioServer = null;
+        ExecutorService ZES_lv_connectionExecutor = null;
+        if (ZES_lv_ingestConfig.ZES_getMode() == ZES_IngestConfig.ZES_Mode.NIO)
         {
-            ZES_lv_producerThreadPool.submit(new ZES_Producer(ZES_lv_queueType0, ZES_lv_queueType1, ZES_lv_queueType2, ZES_lv_queueType3, ZES_lv_queueType4, i, ZES_lv_serverSocket));
+            ZES_lv_nioServer = new ZES_NioIngestServer(ZES_lv_pipeline, ZES_lv_LISTENING_PORT, ZES_lv_ingestConfig);
+            ZES_lv_nioServer.ZES_start();
+            ZES_NioIngestServer ZES_lv_server = ZES_lv_nioServer;
+            ZES_lv_statsReporter.ZES_register("acceptors", () -> Arrays.toString(ZES_lv_server.ZES_getAcceptedConnections()));
         }
+        else
+        {
+            if (ZES_lv_ingestConfig.ZES_getMode() == ZES_IngestConfig.ZES_Mode.VIRTUAL)
+            {
+                ZES_lv_connectionExecutor = ZES_Producer.ZES_newVirtualThreadExecutor();
+            }
+            ServerSocket[] ZES_lv_serverSockets = ZES_Producer.ZES_openServerSockets(ZES_lv_LISTENING_PORT, ZES_lv_ingestConfig.ZES_getAcceptors());
+            List<ZES_Producer> ZES_lv_producers = new ArrayList<>();
+            for (int i = 0; i < ZES_lv_serverSockets.length; i++)
+            {
+                ZES_Producer ZES_lv_producer = new ZES_Producer(ZES_lv_pipeline, i, ZES_lv_serverSockets[i], ZES_lv_ingestConfig, ZES_lv_connectionExecutor);
+                ZES_lv_producers.add(ZES_lv_producer);
+                ZES_lv_producerThreadPool.submit(ZES_lv_producer);
+            }
+            ZES_lv_statsReporter.ZES_register("acceptors", () -> Arrays.toString(ZES_lv_producers.stream().mapToLong(ZES_Producer::ZES_getAcceptedConnections).toArray()));
+        }
+        ZES_UdpIngestServer ZES_lv_udpServer = null;
+        if (ZES_lv_ingestConfig.ZES_isUdpEnabled())
+        {
+            ZES_lv_udpServer = new ZES_UdpIngestServer(ZES_lv_pipeline, ZES_lv_ingestConfig.ZES_getUdpPort(ZES_lv_LISTENING_PORT), ZES_lv_ingestConfig.ZES_getUdpReceiveBufferSize());
+            ZES_lv_udpServer.ZES_start();
+            ZES_lv_statsReporter.ZES_register("udp", ZES_lv_udpServer::ZES_stats);
+        }
+        ZES_NioIngestServer ZES_lv_nioServerRef = ZES_lv_nioServer;
+        ZES_UdpIngestServer ZES_lv_udpServerRef = ZES_lv_udpServer;
+        ExecutorService ZES_lv_connectionExecutorRef = ZES_lv_connectionExecutor;
+        ZES_lv_statsReporter.ZES_start();
 
-        //ZES_lv_consumerThreadPool.submit(new ZES_Consumer(ZES_lv_queueType0, 0));
-        //ZES_lv_consumerThreadPool.submit(new ZES_Consumer(ZES_lv_queueType1, 1));
-        //ZES_lv_consumerThreadPool.submit(new ZES_Consumer(ZES_lv_queueType2, 2));
-        //ZES_lv_consumerThreadPool.submit(new ZES_Consumer(ZES_lv_queueType3, 3));
-        //ZES_lv_consumerThreadPool.submit(new ZES_Consumer(ZES_lv_queueType4, 4));
         // Graceful shutdown hook 추가
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             ZES_gv_logger.info("Shutting down application...");
+            ZES_lv_statsReporter.ZES_report();
+            ZES_lv_statsReporter.close();
+            if (ZES_lv_nioServerRef != null)
+            {
+                ZES_lv_nioServerRef.close();
+            }
+            if (ZES_lv_udpServerRef != null)
+            {
+                ZES_lv_udpServerRef.close();
+            }
             ZES_lv_producerThreadPool.shutdown();
-            ZES_lv_consumerThreadPool.shutdown();
+            if (ZES_lv_connectionExecutorRef != null)
+            {
+                ZES_lv_connectionExecutorRef.shutdownNow();
+            }
             try
             {
                 if (!ZES_lv_producerThreadPool.awaitTermination(10, TimeUnit.SECONDS))
@@ -66,39 +103,17 @@ public class ZES_DeviceApplication
                     ZES_gv_logger.warning("Producer threads did not terminate gracefully, forcing shutdown");
                     ZES_lv_producerThreadPool.shutdownNow();
                 }
-                if (!ZES_lv_consumerThreadPool.awaitTermination(10, TimeUnit.SECONDS))
-                {
-                    ZES_gv_logger.warning("Consumer threads did not terminate gracefully, forcing shutdown");
-                    ZES_lv_consumerThreadPool.shutdownNow();
-                }
             }
             catch (InterruptedException e)
             {
                 ZES_gv_logger.severe("Shutdown interrupted");
                 ZES_lv_producerThreadPool.shutdownNow();
-                ZES_lv_consumerThreadPool.shutdownNow();
                 Thread.currentThread().interrupt();
             }
+            ZES_lv_pipeline.close();
             ZES_lv_networkConfigurator.ZES_restoreDhcp();
             ZES_lv_dhcpServer.close();
         }));
     }
 
-    public static long ZES_convertByteArrayToLong(byte[] byteData, int position, int size)
-    {
-        long ZES_lv_value = 0;
-        for (int i = 0; i < size; i++)
-        {
-            ZES_lv_value = (ZES_lv_value << 8) | (byteData[position + i] & 0xFF);
-        }
-        return ZES_lv_value;
-    }
-
-    public static String ZES_convertByteArrayToString(byte[] byteData, int position, int size)
-    {
-        byte[] ZES_lv_subArray = new byte[size];
-        System.arraycopy(byteData, position, ZES_lv_subArray, 0, size);
-        return new String(ZES_lv_subArray);
-    }
-
 }
@@ -0,0 +1,149 @@
+package com.zes.device;
+
+import java.nio.ByteBuffer;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.ZES_FrameDispatcher.*;
+
+// 연결별 수신 버퍼. 512바이트 프레임이 완성되면 buffer[0..512)에 위치시킨다.
+// resync가 켜져 있으면 checksum이 맞지 않을 때 한 바이트씩 밀면서 다음 유효 프레임 위치를 찾는다.
+public final class ZES_FrameAssembler
+{
+    private final byte[] buffer = new byte[ZES_gv_FRAME_SIZE * 2];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer);
+    private final ZES_FrameHeader header = new ZES_FrameHeader();
+    private final boolean resync;
+    // 전체 연결의 resync 통계를 모으는 곳
+    private final ZES_Pipeline pipeline;
+    private int fill = 0;
+    private long skippedBytes = 0;
+    private int resyncCount = 0;
+
+    public ZES_FrameAssembler(boolean resync, ZES_Pipeline pipeline)
+    {
+        this.resync = resync;
+        this.pipeline = pipeline;
+    }
+
+    public byte[] ZES_array()
+    {
+        return buffer;
+    }
+
+    public int ZES_buffered()
+    {
+        return fill;
+    }
+
+    public int ZES_writable()
+    {
+        return buffer.length - fill;
+    }
+
+    public void ZES_advance(int bytesRead)
+    {
+        fill += bytesRead;
+    }
+
+    // NIO 채널용 쓰기 버퍼. read 후에는 ZES_syncFromBuffer()를 호출한다.
+    public ByteBuffer ZES_writeBuffer()
+    {
+        view.limit(buffer.length).position(fill);
+        return view;
+    }
+
+    public void ZES_syncFromBuffer()
+    {
+        fill = view.position();
+    }
+
+    // ZES_nextFrame()이 true를 반환한 프레임의 헤더
+    public ZES_FrameHeader ZES_header()
+    {
+        return header;
+    }
+
+    // 연결 종료 시 resync로 건너뛴 바이트 수 보고
+    public void ZES_logResync(Object source)
+    {
+        if (skippedBytes > 0)
+        {
+            ZES_gv_logger.warning("Frame resync on " + source + ": skipped " + skippedBytes + " bytes, recovered " + resyncCount + " times");
+        }
+    }
+
+    public boolean ZES_nextFrame()
+    {
+        if (fill < ZES_gv_FRAME_SIZE)
+        {
+            return false;
+        }
+        if (header.ZES_parse(buffer, 0) || !resync)
+        {
+            // resync를 끄면 기존 동작: 검증 실패한 프레임은 dispatcher가 로그를 남기고 버린다
+            return true;
+        }
+
+        long ZES_lv_sum = 0;
+        for (int i = 0; i < ZES_gv_CHECKSUM_OFFSET; i++)
+        {
+            ZES_lv_sum += buffer[i] & 0xff;
+        }
+
+        // 510바이트 합을 한 칸씩 굴리면서 다음 유효 오프셋 탐색
+        int ZES_lv_last = fill - ZES_gv_FRAME_SIZE;
+        for (int i = 1; i <= ZES_lv_last; i++)
+        {
+            ZES_lv_sum += (buffer[i - 1 + ZES_gv_CHECKSUM_OFFSET] & 0xff) - (buffer[i - 1] & 0xff);
+            if (ZES_lv_sum == ZES_checkSumAt(i) && ZES_isPlausibleIctNumber(i))
+            {
+                ZES_skip(i, true);
+                resyncCount++;
+                return header.ZES_parse(buffer, 0);
+            }
+        }
+        // 유효 프레임이 없으면 다음 프레임 후보가 될 수 있는 마지막 511바이트만 남긴다
+        ZES_skip(fill - (ZES_gv_FRAME_SIZE - 1), false);
+        return false;
+    }
+
+    public void ZES_consumeFrame()
+    {
+        ZES_discard(ZES_gv_FRAME_SIZE);
+    }
+
+    private void ZES_skip(int count, boolean recovered)
+    {
+        skippedBytes += count;
+        pipeline.ZES_recordResync(count, recovered);
+        ZES_discard(count);
+    }
+
+    private void ZES_discard(int count)
+    {
+        int ZES_lv_remaining = fill - count;
+        if (ZES_lv_remaining > 0)
+        {
+            System.arraycopy(buffer, count, buffer, 0, ZES_lv_remaining);
+        }
+        fill = ZES_lv_remaining;
+    }
+
+    private long ZES_checkSumAt(int offset)
+    {
+        return ((buffer[offset + ZES_gv_CHECKSUM_OFFSET] & 0xff) << 8) | (buffer[offset + ZES_gv_CHECKSUM_OFFSET + 1] & 0xff);
+    }
+
+    // ICT 번호는 출력 가능한 ASCII 8자리
+    private boolean ZES_isPlausibleIctNumber(int offset)
+    {
+        for (int i = offset + ZES_gv_ICT_NUMBER_OFFSET; i < offset + ZES_gv_ICT_NUMBER_OFFSET + ZES_gv_ICT_NUMBER_SIZE; i++)
+        {
+            if (buffer[i] < 0x21 || buffer[i] > 0x7e)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_FrameValues;
+import com.zes.device.models.ZES_IctId;
+import com.zes.device.models.ZES_TypeMysqlDB;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+
+public class ZES_FrameDispatcher
+{
+    public static final int ZES_gv_FRAME_SIZE = 512;
+    public static final int ZES_gv_CHECKSUM_OFFSET = 510;
+    public static final int ZES_gv_ICT_NUMBER_OFFSET = 10;
+    public static final int ZES_gv_ICT_NUMBER_SIZE = 8;
+
+    private final ZES_FrameTypeRegistry registry;
+    private final boolean persistEnabled;
+    private final boolean deltaEnabled;
+    private final boolean skipUnchanged;
+    // null이면 InfluxDB 이력 저장 안 함
+    private final ZES_InfluxWriter history;
+    // null이면 MySQL 이력 테이블 저장 안 함
+    private final ZES_HistoryWriter historyTables;
+
+    public ZES_FrameDispatcher(ZES_FrameTypeRegistry registry, boolean persistEnabled, boolean deltaEnabled, boolean skipUnchanged, ZES_InfluxWriter history,
+                               ZES_HistoryWriter historyTables)
+    {
+        this.registry = registry;
+        this.persistEnabled = persistEnabled;
+        this.deltaEnabled = deltaEnabled;
+        this.skipUnchanged = skipUnchanged;
+        this.history = history;
+        this.historyTables = historyTables;
+    }
+
+    // 검증된 헤더와 함께 512바이트 프레임 하나를 타입별 큐에 넣는다. (decode 단계)
+    // ICT 번호 필터는 앞 단계(ZES_Pipeline.ZES_submit)에서 이미 적용된다.
+    // frame은 이 프레임 전용 배열이어야 한다 (모델이 복사하지 않고 그대로 들고 있음).
+    public boolean ZES_dispatch(byte[] frame, ZES_FrameHeader header, long timestamp) throws InterruptedException
+    {
+        ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type = ZES_typeOf(header);
+        if (ZES_lv_type == null)
+        {
+            return false;
+        }
+        ZES_TypeMysqlDB ZES_lv_frame = ZES_prepare(ZES_lv_type, frame, header, timestamp, true);
+        if (ZES_lv_frame != null)
+        {
+            ZES_lv_type.ZES_queueFor(ZES_lv_frame.ZES_gv_ictId).put(ZES_lv_frame);
+        }
+        return true;
+    }
+
+    // ZES_dispatch와 같지만 타입별 큐가 가득 차면 막히지 않고, 넣지 못한 모델을 돌려준다 (NIO event loop용, null이면 처리 끝)
+    // decode와 직전 값 갱신, 이력은 이미 끝났으므로 같은 프레임을 다시 dispatch 하지 말고 돌려받은 것을 다시 넣어야 한다
+    public ZES_Pipeline.ZES_Pending<ZES_TypeMysqlDB> ZES_tryDispatch(byte[] frame, ZES_FrameHeader header, long timestamp)
+    {
+        ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type = ZES_typeOf(header);
+        if (ZES_lv_type == null)
+        {
+            return null;
+        }
+        ZES_TypeMysqlDB ZES_lv_frame;
+        try
+        {
+            ZES_lv_frame = ZES_prepare(ZES_lv_type, frame, header, timestamp, false);
+        }
+        catch (InterruptedException e)
+        {
+            // block=false면 기다리지 않으므로 일어나지 않는다
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (ZES_lv_frame == null)
+        {
+            return null;
+        }
+        ZES_Pipeline.ZES_Pending<ZES_TypeMysqlDB> ZES_lv_pending = new ZES_Pipeline.ZES_Pending<>(ZES_lv_type.ZES_queueFor(ZES_lv_frame.ZES_gv_ictId), ZES_lv_frame);
+        return ZES_lv_pending.ZES_offer() ? null : ZES_lv_pending;
+    }
+
+    // checksum 실패나 모르는 info type이면 로그를 남기고 null
+    private ZES_FrameTypeRegistry.ZES_FrameType ZES_typeOf(ZES_FrameHeader header)
+    {
+        if (!header.ZES_gv_valid)
+        {
+            ZES_gv_logger.warning("Checksum validation failed for ICT: " + header.ZES_ictNumberString());
+            return null;
+        }
+        int ZES_lv_infoType = header.ZES_gv_infoType;
+        ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type = registry.ZES_lookup(ZES_lv_infoType);
+        if (ZES_lv_type == null)
+        {
+            ZES_gv_logger.warning("Unknown info type: " + ZES_lv_infoType + " from ICT: " + header.ZES_ictNumberString());
+        }
+        return ZES_lv_type;
+    }
+
+    // 모델을 만들고 직전 값과 비교해 이력에 넘긴다. 저장 단계로 보낼 모델, 보낼 것이 없으면 null. block=false면 이력 큐도 기다리지 않는다
+    private ZES_TypeMysqlDB ZES_prepare(ZES_FrameTypeRegistry.ZES_FrameType type, byte[] frame, ZES_FrameHeader header, long timestamp, boolean block) throws InterruptedException
+    {
+        if (!persistEnabled && history == null && historyTables == null)
+        {
+            // 저장 worker가 없으면 큐에 쌓지 않는다 (큐가 가득 차서 수집이 멈추는 것 방지)
+            return null;
+        }
+        ZES_IctId ZES_lv_ictId = ZES_IctId.ZES_of(header.ZES_gv_ictNumber);
+        ZES_TypeMysqlDB ZES_lv_frame = type.ZES_gv_decoder.ZES_decode(timestamp, frame, ZES_lv_ictId);
+        boolean ZES_lv_unchanged = deltaEnabled && type.ZES_track(ZES_lv_frame).ZES_isUnchanged();
+        if (history != null || historyTables != null)
+        {
+            // 이력은 conflate/skip 전에 모든 프레임을 남긴다
+            ZES_FrameValues ZES_lv_values = ZES_lv_frame.ZES_getValues();
+            if (ZES_lv_values == null)
+            {
+                ZES_lv_values = ZES_lv_frame.ZES_decode(null);
+            }
+            if (history != null)
+            {
+                history.ZES_offer(ZES_lv_frame, ZES_lv_values, block);
+            }
+            if (historyTables != null)
+            {
+                historyTables.ZES_offer(ZES_lv_frame, ZES_lv_values, ZES_lv_unchanged, block);
+            }
+        }
+        if (!persistEnabled)
+        {
+            return null;
+        }
+        if (ZES_lv_unchanged && skipUnchanged)
+        {
+            // 직전 프레임과 필드 값이 모두 같으면 저장 단계로 보내지 않는다
+            return null;
+        }
+        return ZES_lv_frame;
+    }
+}
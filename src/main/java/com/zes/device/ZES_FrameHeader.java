@@ -0,0 +1,65 @@
+package com.zes.device;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import static com.zes.device.ZES_FrameDispatcher.*;
+
+// 프레임 checksum 검증과 헤더(info type, ICT 번호) 추출을 한 번의 순회로 처리한다.
+// 연결(assembler)마다 하나씩 두고 재사용한다.
+public final class ZES_FrameHeader
+{
+    private static final VarHandle ZES_gv_LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final long ZES_gv_BYTE_LANES = 0x00FF00FF00FF00FFL;
+    private static final long ZES_gv_SHORT_LANES = 0x0000FFFF0000FFFFL;
+
+    public boolean ZES_gv_valid;
+    public int ZES_gv_infoType;
+    public long ZES_gv_ictNumber;
+
+    // 8바이트씩 읽어서 16비트 lane 4개에 바이트 합을 누적(SWAR). 63 word * 510 < 65536 이라 lane overflow 없음
+    public boolean ZES_parse(byte[] frame, int offset)
+    {
+        // word1 = 바이트 8..15 (info type 9, ICT 10..15), word2 = 바이트 16..23 (ICT 16..17)
+        long ZES_lv_word1 = (long) ZES_gv_LONG_BE.get(frame, offset + Long.BYTES);
+        long ZES_lv_word2 = (long) ZES_gv_LONG_BE.get(frame, offset + 2 * Long.BYTES);
+        long ZES_lv_lanes = 0;
+        int ZES_lv_lastWord = offset + ZES_gv_FRAME_SIZE - Long.BYTES;
+        for (int i = offset; i < ZES_lv_lastWord; i += Long.BYTES)
+        {
+            long ZES_lv_word = (long) ZES_gv_LONG_BE.get(frame, i);
+            ZES_lv_lanes += (ZES_lv_word & ZES_gv_BYTE_LANES) + ((ZES_lv_word >>> 8) & ZES_gv_BYTE_LANES);
+        }
+        // 마지막 word는 합산 대상 6바이트 + checksum 2바이트
+        long ZES_lv_tail = (long) ZES_gv_LONG_BE.get(frame, ZES_lv_lastWord);
+        long ZES_lv_data = ZES_lv_tail & 0xFFFFFFFFFFFF0000L;
+        ZES_lv_lanes += (ZES_lv_data & ZES_gv_BYTE_LANES) + ((ZES_lv_data >>> 8) & ZES_gv_BYTE_LANES);
+        long ZES_lv_pairs = (ZES_lv_lanes & ZES_gv_SHORT_LANES) + ((ZES_lv_lanes >>> 16) & ZES_gv_SHORT_LANES);
+        long ZES_lv_sum = (ZES_lv_pairs & 0xFFFFFFFFL) + (ZES_lv_pairs >>> 32);
+
+        ZES_gv_infoType = (int) ((ZES_lv_word1 >>> 48) & 0xFF);
+        ZES_gv_ictNumber = (ZES_lv_word1 << 16) | (ZES_lv_word2 >>> 48);
+        ZES_gv_valid = ZES_lv_sum == (ZES_lv_tail & 0xFFFF);
+        return ZES_gv_valid;
+    }
+
+    public ZES_FrameHeader ZES_copy()
+    {
+        ZES_FrameHeader ZES_lv_copy = new ZES_FrameHeader();
+        ZES_lv_copy.ZES_gv_valid = ZES_gv_valid;
+        ZES_lv_copy.ZES_gv_infoType = ZES_gv_infoType;
+        ZES_lv_copy.ZES_gv_ictNumber = ZES_gv_ictNumber;
+        return ZES_lv_copy;
+    }
+
+    public String ZES_ictNumberString()
+    {
+        byte[] ZES_lv_bytes = new byte[ZES_gv_ICT_NUMBER_SIZE];
+        for (int i = 0; i < ZES_gv_ICT_NUMBER_SIZE; i++)
+        {
+            ZES_lv_bytes[i] = (byte) (ZES_gv_ictNumber >>> (56 - 8 * i));
+        }
+        return new String(ZES_lv_bytes);
+    }
+}
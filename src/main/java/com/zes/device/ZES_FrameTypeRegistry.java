@@ -0,0 +1,212 @@
+package com.zes.device;
+
+import com.zes.device.models.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+
+// info type(프레임 offset 9) -> decoder, sink, 큐 shard 매핑.
+// 새 프레임 타입은 ZES_register 한 줄로 추가하고, 바쁜 타입은 shard 수를 늘려 저장 스레드를 더 붙인다.
+public final class ZES_FrameTypeRegistry
+{
+    private static final int ZES_gv_INFO_TYPE_COUNT = 256;
+
+    // 512바이트 프레임 -> 모델 객체 (decode worker에서 호출)
+    @FunctionalInterface
+    public interface ZES_Decoder
+    {
+        ZES_TypeMysqlDB ZES_decode(long timestamp, byte[] frame, ZES_IctId ictId);
+    }
+
+    // 모델 객체 저장 (persist worker에서 호출)
+    @FunctionalInterface
+    public interface ZES_Sink
+    {
+        void ZES_save(ZES_TypeMysqlDB frame) throws SQLException;
+
+        // 같은 shard 큐에서 꺼낸 프레임 여러 개 (순서 유지)
+        default void ZES_saveAll(List<ZES_TypeMysqlDB> frames) throws SQLException
+        {
+            for (ZES_TypeMysqlDB ZES_lv_frame : frames)
+            {
+                ZES_save(ZES_lv_frame);
+            }
+        }
+
+        // spill log(ZES_SpillLog)에 남은 프레임을 다시 저장. 실패하면 다시 spill 하지 않고 예외를 던진다
+        default void ZES_replay(List<ZES_TypeMysqlDB> frames) throws SQLException
+        {
+            ZES_saveAll(frames);
+        }
+    }
+
+    // realtime 테이블(pms_real_data_<N>) 저장. 여러 프레임은 한 트랜잭션으로 묶어 저장한다
+    private static final class ZES_RealTimeSink implements ZES_Sink
+    {
+        @Override
+        public void ZES_save(ZES_TypeMysqlDB frame)
+        {
+            frame.ZES_saveRealTime();
+        }
+
+        @Override
+        public void ZES_saveAll(List<ZES_TypeMysqlDB> frames)
+        {
+            ZES_RealTimeBatch.ZES_save(frames);
+        }
+
+        @Override
+        public void ZES_replay(List<ZES_TypeMysqlDB> frames) throws SQLException
+        {
+            ZES_RealTimeBatch.ZES_saveOrThrow(frames);
+        }
+    }
+
+    public static final class ZES_FrameType
+    {
+        public final int ZES_gv_infoType;
+        public final String ZES_gv_name;
+        public final ZES_Decoder ZES_gv_decoder;
+        public final ZES_Sink ZES_gv_sink;
+        private final List<BlockingQueue<ZES_TypeMysqlDB>> queues;
+        private final int queueCapacity;
+        // 설비별 직전 프레임 decode 결과
+        private final ConcurrentHashMap<ZES_IctId, ZES_FrameValues> lastValues = new ConcurrentHashMap<>();
+        private final LongAdder unchanged = new LongAdder();
+
+        private ZES_FrameType(int infoType, String name, ZES_Decoder decoder, ZES_Sink sink, int shards, int queueCapacity, boolean conflate)
+        {
+            this.ZES_gv_infoType = infoType;
+            this.ZES_gv_name = name;
+            this.ZES_gv_decoder = decoder;
+            this.ZES_gv_sink = sink;
+            this.queueCapacity = queueCapacity;
+            List<BlockingQueue<ZES_TypeMysqlDB>> ZES_lv_queues = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++)
+            {
+                // conflate: 설비마다 저장 안 된 프레임은 최신 것 하나만 남긴다 (capacity = 대기 중인 설비 수)
+                ZES_lv_queues.add(conflate
+                        ? new ZES_ConflatingQueue<ZES_IctId, ZES_TypeMysqlDB>(frame -> frame.ZES_gv_ictId, queueCapacity)
+                        : new ArrayBlockingQueue<>(queueCapacity));
+            }
+            this.queues = Collections.unmodifiableList(ZES_lv_queues);
+        }
+
+        // 같은 ICT 번호는 항상 같은 shard로 보내서 설비별 저장 순서를 유지한다.
+        public BlockingQueue<ZES_TypeMysqlDB> ZES_queueFor(ZES_IctId ictId)
+        {
+            int ZES_lv_shards = queues.size();
+            return ZES_lv_shards == 1 ? queues.get(0) : queues.get(Math.floorMod(ictId.hashCode(), ZES_lv_shards));
+        }
+
+        // 직전 프레임과 비교해서 decode 하고, 이 프레임을 다음 비교 기준으로 남긴다
+        public ZES_FrameValues ZES_track(ZES_TypeMysqlDB frame)
+        {
+            ZES_FrameValues ZES_lv_values = lastValues.compute(frame.ZES_gv_ictId, (ictId, previous) -> frame.ZES_decode(previous));
+            if (ZES_lv_values.ZES_isUnchanged())
+            {
+                unchanged.increment();
+            }
+            return ZES_lv_values;
+        }
+
+        public List<BlockingQueue<ZES_TypeMysqlDB>> ZES_getQueues()
+        {
+            return queues;
+        }
+
+        public String ZES_stats()
+        {
+            StringBuilder ZES_lv_stats = new StringBuilder(ZES_gv_name).append('=');
+            for (int i = 0; i < queues.size(); i++)
+            {
+                if (i > 0)
+                {
+                    ZES_lv_stats.append(',');
+                }
+                ZES_lv_stats.append(queues.get(i).size());
+            }
+            ZES_lv_stats.append('/').append(queueCapacity);
+            long ZES_lv_conflated = 0;
+            for (BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queue : queues)
+            {
+                if (ZES_lv_queue instanceof ZES_ConflatingQueue)
+                {
+                    ZES_lv_conflated += ((ZES_ConflatingQueue<?, ?>) ZES_lv_queue).ZES_getConflated();
+                }
+            }
+            if (ZES_lv_conflated > 0)
+            {
+                ZES_lv_stats.append("(conflated=").append(ZES_lv_conflated).append(')');
+            }
+            long ZES_lv_unchanged = unchanged.sum();
+            if (ZES_lv_unchanged > 0)
+            {
+                ZES_lv_stats.append("(unchanged=").append(ZES_lv_unchanged).append(')');
+            }
+            return ZES_lv_stats.toString();
+        }
+    }
+
+    private final ZES_FrameType[] types = new ZES_FrameType[ZES_gv_INFO_TYPE_COUNT];
+    private final List<ZES_FrameType> registered = new ArrayList<>();
+
+    // conflate=true면 shard 큐에 설비별로 최신 프레임 하나만 남긴다. 설비마다 마지막 값만 저장하는 sink에만 사용
+    public ZES_FrameTypeRegistry ZES_register(int infoType, String name, ZES_Decoder decoder, ZES_Sink sink, int shards, int queueCapacity, boolean conflate)
+    {
+        if (infoType < 0 || infoType >= ZES_gv_INFO_TYPE_COUNT)
+        {
+            throw new IllegalArgumentException("Info type out of range: " + infoType);
+        }
+        if (types[infoType] != null)
+        {
+            throw new IllegalStateException("Info type already registered: " + infoType);
+        }
+        ZES_FrameType ZES_lv_type = new ZES_FrameType(infoType, name, decoder, sink, Math.max(1, shards), Math.max(1, queueCapacity), conflate);
+        types[infoType] = ZES_lv_type;
+        registered.add(ZES_lv_type);
+        return this;
+    }
+
+    // 등록되지 않은 info type이면 null
+    public ZES_FrameType ZES_lookup(int infoType)
+    {
+        return infoType >= 0 && infoType < ZES_gv_INFO_TYPE_COUNT ? types[infoType] : null;
+    }
+
+    public List<ZES_FrameType> ZES_getTypes()
+    {
+        return Collections.unmodifiableList(registered);
+    }
+
+    // 기존 Type0~4. shard 수는 zes.pipeline.type<N>.shards 로 타입별 지정 (기본 defaultShards)
+    public static ZES_FrameTypeRegistry ZES_defaults(int defaultShards, int queueCapacity, boolean conflate)
+    {
+        // 레이아웃 파일 오류가 첫 프레임이 아니라 시작 시점에 드러나도록 미리 읽는다. 마지막 저장 값 캐시도 같이 만든다 (warm은 ZES_Pipeline.ZES_start)
+        for (int infoType = 0; infoType <= 4; infoType++)
+        {
+            ZES_FrameLayout.ZES_forType(infoType);
+            ZES_LastStateCache.ZES_forType(infoType);
+        }
+        ZES_Sink ZES_lv_realTime = new ZES_RealTimeSink();
+        return new ZES_FrameTypeRegistry()
+                .ZES_register(0, "type0", ZES_Type0::new, ZES_lv_realTime, ZES_shards(0, defaultShards), queueCapacity, conflate)
+                .ZES_register(1, "type1", ZES_Type1::new, ZES_lv_realTime, ZES_shards(1, defaultShards), queueCapacity, conflate)
+                .ZES_register(2, "type2", ZES_Type2::new, ZES_lv_realTime, ZES_shards(2, defaultShards), queueCapacity, conflate)
+                .ZES_register(3, "type3", ZES_Type3::new, ZES_lv_realTime, ZES_shards(3, defaultShards), queueCapacity, conflate)
+                .ZES_register(4, "type4", ZES_Type4::new, ZES_lv_realTime, ZES_shards(4, defaultShards), queueCapacity, conflate);
+    }
+
+    private static int ZES_shards(int infoType, int defaultShards)
+    {
+        return ZES_getInt("zes.pipeline.type" + infoType + ".shards", "ZES_PIPELINE_TYPE" + infoType + "_SHARDS", defaultShards);
+    }
+}
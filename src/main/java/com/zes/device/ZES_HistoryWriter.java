@@ -0,0 +1,484 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_FrameValues;
+import com.zes.device.models.ZES_TypeMysqlDB;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getString;
+
+// decode된 프레임을 타입별 MySQL 이력 테이블(<realtime 테이블><zes.history.table.suffix>)에 append 한다.
+// 이력 테이블은 created_date 기준 월별 RANGE 파티션이고, 앞으로 쓸 달의 파티션은 미리 만든다 (오래된 달은 DROP PARTITION으로 지운다).
+// decode 단계는 큐에 넣고 바로 돌아가고, writer 스레드 하나가 모아서 multi-row INSERT로 한 트랜잭션에 쓴다 (ZES_InfluxWriter와 같은 구조).
+public class ZES_HistoryWriter implements AutoCloseable
+{
+    private static final int ZES_gv_MAX_BACKOFF_MILLIS = 30_000;
+    // MySQL prepared statement의 parameter 수 상한
+    private static final int ZES_gv_MAX_PARAMETERS = 65_535;
+    // 파티션이 없는 값을 INSERT 함 (ER_NO_PARTITION_FOR_GIVEN_VALUE)
+    private static final int ZES_gv_NO_PARTITION = 1526;
+    private static final long ZES_gv_CHECK_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final long ZES_gv_RETRY_CHECK_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // created_date와 같은 한국 시간 기준으로 달을 나눈다
+    private static final ZoneOffset ZES_gv_ZONE = ZoneOffset.ofHours(9);
+    private static final DateTimeFormatter ZES_gv_PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String ZES_gv_MAX_PARTITION = "pmax";
+
+    private final String suffix;
+    private final boolean changedOnly;
+    private final boolean create;
+    private final int batchSize;
+    private final int rowsPerInsert;
+    private final long flushNanos;
+    private final long blockNanos;
+    private final int aheadMonths;
+    private final int retentionMonths;
+    private final int retries;
+    private final BlockingQueue<ZES_Entry> queue;
+    // writer 스레드에서만 사용
+    private final Map<String, ZES_Table> tables = new HashMap<>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong partitions = new AtomicLong();
+    private volatile boolean closed = false;
+    // writer가 실패한 batch를 다시 쓰려고 기다리는 중. 이때는 큐가 비지 않으므로 decode 단계가 기다리지 않는다
+    private volatile boolean backingOff = false;
+    private Thread writer;
+
+    private ZES_HistoryWriter(String suffix, boolean changedOnly, boolean create, int batchSize, int rowsPerInsert, int flushMillis, int blockMillis,
+                              int queueCapacity, int aheadMonths, int retentionMonths, int retries)
+    {
+        this.suffix = suffix;
+        this.changedOnly = changedOnly;
+        this.create = create;
+        this.batchSize = batchSize;
+        this.rowsPerInsert = rowsPerInsert;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.aheadMonths = aheadMonths;
+        this.retentionMonths = retentionMonths;
+        this.retries = retries;
+    }
+
+    // zes.history.enabled=false(기본)면 null
+    public static ZES_HistoryWriter ZES_fromEnvironment()
+    {
+        if (!ZES_getBoolean("zes.history.enabled", "ZES_HISTORY_ENABLED", false))
+        {
+            return null;
+        }
+        String ZES_lv_suffix = ZES_getString("zes.history.table.suffix", "ZES_HISTORY_TABLE_SUFFIX", "_history").trim();
+        if (!ZES_lv_suffix.matches("\\w+"))
+        {
+            throw new IllegalArgumentException("Invalid zes.history.table.suffix: " + ZES_lv_suffix);
+        }
+        // all: 모든 프레임(기본) / changed: 직전 프레임과 값이 같은 프레임은 남기지 않음 (zes.pipeline.delta=true일 때만)
+        boolean ZES_lv_changedOnly = "changed".equals(ZES_getString("zes.history.mode", "ZES_HISTORY_MODE", "all").toLowerCase());
+        boolean ZES_lv_create = ZES_getBoolean("zes.history.create", "ZES_HISTORY_CREATE", true);
+        int ZES_lv_batchSize = Math.max(1, ZES_getInt("zes.history.batch.size", "ZES_HISTORY_BATCH_SIZE", 1000));
+        int ZES_lv_rowsPerInsert = Math.max(1, ZES_getInt("zes.history.rows.per.insert", "ZES_HISTORY_ROWS_PER_INSERT", 100));
+        int ZES_lv_flushMillis = Math.max(0, ZES_getInt("zes.history.flush.ms", "ZES_HISTORY_FLUSH_MS", 1000));
+        int ZES_lv_blockMillis = Math.max(0, ZES_getInt("zes.history.block.ms", "ZES_HISTORY_BLOCK_MS", 0));
+        int ZES_lv_queueCapacity = Math.max(1, ZES_getInt("zes.history.queue.capacity", "ZES_HISTORY_QUEUE_CAPACITY", 20000));
+        int ZES_lv_aheadMonths = Math.max(1, ZES_getInt("zes.history.partition.ahead.months", "ZES_HISTORY_PARTITION_AHEAD_MONTHS", 3));
+        // 0이면 지우지 않는다
+        int ZES_lv_retentionMonths = Math.max(0, ZES_getInt("zes.history.retention.months", "ZES_HISTORY_RETENTION_MONTHS", 0));
+        int ZES_lv_retries = Math.max(0, ZES_getInt("zes.history.retries", "ZES_HISTORY_RETRIES", 5));
+        return new ZES_HistoryWriter(ZES_lv_suffix, ZES_lv_changedOnly, ZES_lv_create, ZES_lv_batchSize, ZES_lv_rowsPerInsert, ZES_lv_flushMillis, ZES_lv_blockMillis,
+                ZES_lv_queueCapacity, ZES_lv_aheadMonths, ZES_lv_retentionMonths, ZES_lv_retries);
+    }
+
+    public void ZES_start()
+    {
+        writer = new Thread(this::ZES_run, "ZES-History");
+        writer.setDaemon(true);
+        writer.start();
+        ZES_gv_logger.info("History writer started: tables *" + suffix + (changedOnly ? " (changed frames only)" : ""));
+    }
+
+    // decode 단계에서 호출. values의 값(슬롯)은 decode가 끝나 더 바뀌지 않지만, 바뀐 필드 표시(ZES_isNewValue)는 저장 스레드가
+    // 같은 인스턴스에서 다시 계산하므로(ZES_plan) 이 writer에서는 읽지 않는다. unchanged: 직전 프레임과 값이 모두 같음
+    // block=false면 block.ms와 상관없이 기다리지 않는다 (NIO event loop)
+    public boolean ZES_offer(ZES_TypeMysqlDB frame, ZES_FrameValues values, boolean unchanged, boolean block) throws InterruptedException
+    {
+        if (changedOnly && unchanged)
+        {
+            skipped.incrementAndGet();
+            return true;
+        }
+        ZES_Entry ZES_lv_entry = new ZES_Entry(frame, values);
+        if (queue.offer(ZES_lv_entry) || (block && blockNanos > 0 && !backingOff && queue.offer(ZES_lv_entry, blockNanos, TimeUnit.NANOSECONDS)))
+        {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void ZES_run()
+    {
+        List<ZES_Entry> ZES_lv_batch = new ArrayList<>(batchSize);
+        ZES_SqlSession ZES_lv_session = ZES_SqlSession.ZES_current();
+        try
+        {
+            while (true)
+            {
+                ZES_Entry ZES_lv_first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (ZES_lv_first == null)
+                {
+                    if (closed)
+                    {
+                        return;
+                    }
+                    continue;
+                }
+                ZES_lv_batch.add(ZES_lv_first);
+                try
+                {
+                    ZES_Batches.ZES_fill(queue, ZES_lv_batch, batchSize, flushNanos, () -> closed);
+                    ZES_write(ZES_lv_session, ZES_lv_batch);
+                }
+                catch (RuntimeException e)
+                {
+                    failed.addAndGet(ZES_lv_batch.size());
+                    ZES_gv_logger.warning("History batch of " + ZES_lv_batch.size() + " rows dropped: " + e);
+                }
+                finally
+                {
+                    ZES_lv_batch.clear();
+                    backingOff = false;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            ZES_lv_session.ZES_release();
+        }
+    }
+
+    private void ZES_write(ZES_SqlSession session, List<ZES_Entry> batch) throws InterruptedException
+    {
+        Map<String, List<ZES_Entry>> ZES_lv_groups = new LinkedHashMap<>();
+        for (ZES_Entry ZES_lv_entry : batch)
+        {
+            ZES_lv_groups.computeIfAbsent(ZES_lv_entry.frame.ZES_getTableName(), table -> new ArrayList<>()).add(ZES_lv_entry);
+        }
+        for (Map.Entry<String, List<ZES_Entry>> ZES_lv_group : ZES_lv_groups.entrySet())
+        {
+            ZES_Table ZES_lv_table = tables.computeIfAbsent(ZES_lv_group.getKey(), ZES_Table::new);
+            ZES_send(session, ZES_lv_table, ZES_lv_group.getValue());
+        }
+    }
+
+    // DB 연결 문제는 backoff 후 다시 쓴다 (트랜잭션이라 일부만 들어가지 않는다). 그 밖의 SQL 오류는 데이터 문제이므로 버린다.
+    // 다시 쓰는 동안 큐가 차면 decode 단계는 기다리지 않고 버린다
+    private void ZES_send(ZES_SqlSession session, ZES_Table table, List<ZES_Entry> entries) throws InterruptedException
+    {
+        long ZES_lv_backoff = 1000;
+        for (int ZES_lv_attempt = 0; ; ZES_lv_attempt++)
+        {
+            ZES_maintain(session, table, entries.get(0).values);
+            try
+            {
+                ZES_insert(session, table, entries);
+                written.addAndGet(entries.size());
+                batches.incrementAndGet();
+                return;
+            }
+            catch (SQLException e)
+            {
+                session.ZES_release();
+                boolean ZES_lv_noPartition = e.getErrorCode() == ZES_gv_NO_PARTITION;
+                if (ZES_lv_noPartition)
+                {
+                    // pmax 없이 만든 테이블이거나 미리 만든 달을 넘어섰다. 파티션을 다시 확인한다
+                    table.nextCheck = System.nanoTime();
+                }
+                else if (!ZES_SpillLog.ZES_isOutage(e))
+                {
+                    failed.addAndGet(entries.size());
+                    ZES_gv_logger.warning("History batch of " + entries.size() + " rows for " + table.name + " dropped: " + e.getMessage());
+                    return;
+                }
+                if (ZES_lv_attempt >= retries || closed)
+                {
+                    failed.addAndGet(entries.size());
+                    ZES_gv_logger.warning("History batch of " + entries.size() + " rows for " + table.name + " dropped after " + (ZES_lv_attempt + 1) + " attempts: " + e.getMessage());
+                    return;
+                }
+                if (!ZES_lv_noPartition)
+                {
+                    ZES_gv_logger.warning("History write to " + table.name + " failed (" + e.getMessage() + "), retrying in " + ZES_lv_backoff + " ms");
+                    backingOff = true;
+                    Thread.sleep(ZES_lv_backoff);
+                    ZES_lv_backoff = Math.min(ZES_gv_MAX_BACKOFF_MILLIS, ZES_lv_backoff * 2);
+                }
+            }
+        }
+    }
+
+    // rowsPerInsert 행씩 multi-row INSERT, 남은 행은 한 행짜리 문장으로 같은 트랜잭션에 batch 한다
+    private void ZES_insert(ZES_SqlSession session, ZES_Table table, List<ZES_Entry> entries) throws SQLException
+    {
+        Connection ZES_lv_conn = session.ZES_begin();
+        ZES_lv_conn.setAutoCommit(false);
+        try
+        {
+            int ZES_lv_next = 0;
+            int ZES_lv_rows = table.rowsPerInsert;
+            if (entries.size() >= ZES_lv_rows)
+            {
+                PreparedStatement ZES_lv_statement = session.ZES_prepare(table.multiInsert);
+                for (; ZES_lv_next + ZES_lv_rows <= entries.size(); ZES_lv_next += ZES_lv_rows)
+                {
+                    int ZES_lv_index = 1;
+                    for (int r = ZES_lv_next; r < ZES_lv_next + ZES_lv_rows; r++)
+                    {
+                        ZES_lv_index = ZES_bind(ZES_lv_statement, ZES_lv_index, entries.get(r));
+                    }
+                    ZES_lv_statement.addBatch();
+                }
+                ZES_lv_statement.executeBatch();
+            }
+            if (ZES_lv_next < entries.size())
+            {
+                PreparedStatement ZES_lv_statement = session.ZES_prepare(table.insert);
+                for (; ZES_lv_next < entries.size(); ZES_lv_next++)
+                {
+                    ZES_bind(ZES_lv_statement, 1, entries.get(ZES_lv_next));
+                    ZES_lv_statement.addBatch();
+                }
+                ZES_lv_statement.executeBatch();
+            }
+            ZES_lv_conn.commit();
+        }
+        catch (SQLException e)
+        {
+            ZES_lv_conn.rollback();
+            throw e;
+        }
+        finally
+        {
+            ZES_lv_conn.setAutoCommit(true);
+        }
+    }
+
+    private static int ZES_bind(PreparedStatement statement, int index, ZES_Entry entry) throws SQLException
+    {
+        return ZES_SQLGenerator.bindInsertRow(statement, index, entry.values, entry.frame.ZES_gv_ictNumber, entry.frame.ZES_getTimestamp());
+    }
+
+    // 처음 쓸 때와 그 뒤 1시간마다: 테이블이 없으면 만들고, 앞으로 쓸 달의 파티션을 추가하고, 보관 기간이 지난 파티션을 지운다.
+    // 실패하면 1분 뒤에 다시 확인한다 (INSERT는 그대로 시도)
+    private void ZES_maintain(ZES_SqlSession session, ZES_Table table, ZES_FrameValues values)
+    {
+        long ZES_lv_now = System.nanoTime();
+        if (table.checked && ZES_lv_now - table.nextCheck < 0)
+        {
+            return;
+        }
+        table.checked = true;
+        if (table.insert == null)
+        {
+            int ZES_lv_rows = Math.min(rowsPerInsert, Math.max(1, ZES_gv_MAX_PARAMETERS / ZES_SQLGenerator.getInsertParameterCount(values)));
+            table.rowsPerInsert = ZES_lv_rows;
+            table.insert = ZES_SQLGenerator.getMultiInsertStatement(values, table.name, 1);
+            table.multiInsert = ZES_SQLGenerator.getMultiInsertStatement(values, table.name, ZES_lv_rows);
+        }
+        try
+        {
+            ZES_partition(session.ZES_begin(), table);
+            table.nextCheck = ZES_lv_now + ZES_gv_CHECK_NANOS;
+        }
+        catch (SQLException e)
+        {
+            session.ZES_release();
+            table.nextCheck = ZES_lv_now + ZES_gv_RETRY_CHECK_NANOS;
+            ZES_gv_logger.warning("History table " + table.name + " partition check failed: " + e.getMessage());
+        }
+    }
+
+    private void ZES_partition(Connection conn, ZES_Table table) throws SQLException
+    {
+        YearMonth ZES_lv_current = YearMonth.now(ZES_gv_ZONE);
+        TreeSet<YearMonth> ZES_lv_months = new TreeSet<>();
+        boolean ZES_lv_exists = false;
+        boolean ZES_lv_hasMax = false;
+        try (PreparedStatement ZES_lv_query = conn.prepareStatement(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=?"))
+        {
+            ZES_lv_query.setString(1, table.name);
+            try (ResultSet ZES_lv_result = ZES_lv_query.executeQuery())
+            {
+                while (ZES_lv_result.next())
+                {
+                    ZES_lv_exists = true;
+                    String ZES_lv_partition = ZES_lv_result.getString(1);
+                    if (ZES_gv_MAX_PARTITION.equals(ZES_lv_partition))
+                    {
+                        ZES_lv_hasMax = true;
+                    }
+                    else if (ZES_lv_partition != null && ZES_lv_partition.matches("p\\d{6}"))
+                    {
+                        ZES_lv_months.add(YearMonth.parse(ZES_lv_partition.substring(1), DateTimeFormatter.ofPattern("yyyyMM")));
+                    }
+                }
+            }
+        }
+        YearMonth ZES_lv_last = ZES_lv_current.plusMonths(aheadMonths);
+        try (Statement ZES_lv_statement = conn.createStatement())
+        {
+            if (!ZES_lv_exists)
+            {
+                if (!create)
+                {
+                    throw new SQLException("History table " + table.name + " does not exist (zes.history.create=false)");
+                }
+                // realtime 테이블과 같은 컬럼. ict_number PRIMARY KEY 대신 (ict_number, created_date) 인덱스
+                ZES_lv_statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + table.name + " LIKE " + table.realTimeName);
+                ZES_lv_statement.executeUpdate("ALTER TABLE " + table.name + " DROP PRIMARY KEY, ADD KEY ix_ict_created (ict_number, created_date)"
+                        + " PARTITION BY RANGE COLUMNS(created_date) (" + ZES_partitions(ZES_lv_current, ZES_lv_last) + ")");
+                partitions.addAndGet(aheadMonths + 1);
+                ZES_gv_logger.info("History table " + table.name + " created with partitions up to " + ZES_lv_last);
+                return;
+            }
+            if (!ZES_lv_hasMax)
+            {
+                if (!table.warned)
+                {
+                    table.warned = true;
+                    ZES_gv_logger.warning("History table " + table.name + " has no " + ZES_gv_MAX_PARTITION + " partition, monthly partitions are not managed");
+                }
+                return;
+            }
+            YearMonth ZES_lv_from = ZES_lv_months.isEmpty() ? ZES_lv_current : ZES_lv_months.last().plusMonths(1);
+            if (!ZES_lv_from.isAfter(ZES_lv_last))
+            {
+                // 비어 있는 pmax를 나누므로 데이터를 옮기지 않는다
+                ZES_lv_statement.executeUpdate("ALTER TABLE " + table.name + " REORGANIZE PARTITION " + ZES_gv_MAX_PARTITION
+                        + " INTO (" + ZES_partitions(ZES_lv_from, ZES_lv_last) + ")");
+                partitions.addAndGet(ZES_lv_from.until(ZES_lv_last, ChronoUnit.MONTHS) + 1);
+                ZES_gv_logger.info("History table " + table.name + " partitions added " + ZES_lv_from + " ~ " + ZES_lv_last);
+            }
+            if (retentionMonths > 0)
+            {
+                YearMonth ZES_lv_oldest = ZES_lv_current.minusMonths(retentionMonths - 1);
+                StringBuilder ZES_lv_drop = new StringBuilder();
+                for (YearMonth ZES_lv_month : ZES_lv_months.headSet(ZES_lv_oldest))
+                {
+                    ZES_lv_drop.append(ZES_lv_drop.length() == 0 ? "" : ", ").append(ZES_gv_PARTITION_NAME.format(ZES_lv_month.atDay(1)));
+                }
+                // DELETE 없이 달 단위로 바로 지운다
+                if (ZES_lv_drop.length() > 0)
+                {
+                    ZES_lv_statement.executeUpdate("ALTER TABLE " + table.name + " DROP PARTITION " + ZES_lv_drop);
+                    ZES_gv_logger.info("History table " + table.name + " dropped partitions " + ZES_lv_drop);
+                }
+            }
+        }
+    }
+
+    // PARTITION p202610 VALUES LESS THAN ('2026-11-01'), ..., PARTITION pmax VALUES LESS THAN (MAXVALUE)
+    private static String ZES_partitions(YearMonth from, YearMonth to)
+    {
+        StringBuilder ZES_lv_builder = new StringBuilder();
+        for (YearMonth ZES_lv_month = from; !ZES_lv_month.isAfter(to); ZES_lv_month = ZES_lv_month.plusMonths(1))
+        {
+            LocalDate ZES_lv_start = ZES_lv_month.atDay(1);
+            ZES_lv_builder.append("PARTITION ").append(ZES_gv_PARTITION_NAME.format(ZES_lv_start))
+                    .append(" VALUES LESS THAN ('").append(ZES_lv_start.plusMonths(1)).append("'), ");
+        }
+        return ZES_lv_builder.append("PARTITION ").append(ZES_gv_MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE)").toString();
+    }
+
+    public String ZES_stats()
+    {
+        return "queue=" + queue.size() + " written=" + written.get() + " batches=" + batches.get() + " skipped=" + skipped.get()
+                + " partitions=" + partitions.get() + " dropped=" + dropped.get() + " failed=" + failed.get();
+    }
+
+    // 큐에 남은 프레임은 한 번씩만 쓰고 끝낸다
+    @Override
+    public void close()
+    {
+        closed = true;
+        if (writer == null)
+        {
+            return;
+        }
+        try
+        {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            if (writer.isAlive())
+            {
+                ZES_gv_logger.warning("History writer did not finish in time, " + queue.size() + " rows not written");
+                writer.interrupt();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class ZES_Table
+    {
+        private final String realTimeName;
+        private final String name;
+        private String insert;
+        private String multiInsert;
+        private int rowsPerInsert;
+        private boolean checked = false;
+        private boolean warned = false;
+        private long nextCheck;
+
+        private ZES_Table(String realTimeName)
+        {
+            this.realTimeName = realTimeName;
+            this.name = realTimeName + suffix;
+        }
+    }
+
+    private static final class ZES_Entry
+    {
+        private final ZES_TypeMysqlDB frame;
+        private final ZES_FrameValues values;
+
+        private ZES_Entry(ZES_TypeMysqlDB frame, ZES_FrameValues values)
+        {
+            this.frame = frame;
+            this.values = values;
+        }
+    }
+}
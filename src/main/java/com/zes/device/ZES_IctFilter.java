@@ -0,0 +1,206 @@
+package com.zes.device;
+
+import com.zes.device.config.ZES_MysqlConfig;
+import com.zes.device.models.ZES_IctId;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getValue;
+
+// ICT 번호 허용/차단 목록. 파일 또는 DB(ZES_Authentication)에서 읽어 long 집합으로 만들고,
+// 백그라운드에서 주기적으로 다시 읽어 통째로 교체한다. I/O 스레드에서 객체 생성 없이 조회한다.
+public class ZES_IctFilter implements AutoCloseable
+{
+    // "P0000000" (미설정 ICT 번호)
+    private static final long ZES_gv_EMPTY_ICT_NUMBER = 0x5030303030303030L;
+    private static final long ZES_gv_ONES = 0x0101010101010101L;
+    private static final long ZES_gv_HIGHS = 0x8080808080808080L;
+
+    private final String allowFile;
+    private final String denyFile;
+    private final String allowQuery;
+    private final String denyQuery;
+    private final int refreshSeconds;
+    private final LongAdder rejected = new LongAdder();
+    private volatile ZES_Snapshot snapshot = new ZES_Snapshot(null, null);
+    private ScheduledExecutorService scheduler;
+
+    private ZES_IctFilter(String allowFile, String denyFile, String allowQuery, String denyQuery, int refreshSeconds)
+    {
+        this.allowFile = allowFile;
+        this.denyFile = denyFile;
+        this.allowQuery = allowQuery;
+        this.denyQuery = denyQuery;
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public static ZES_IctFilter ZES_fromEnvironment()
+    {
+        return new ZES_IctFilter(
+                ZES_getValue("zes.ict.allowlist.file", "ZES_ICT_ALLOWLIST_FILE"),
+                ZES_getValue("zes.ict.denylist.file", "ZES_ICT_DENYLIST_FILE"),
+                ZES_getValue("zes.ict.allowlist.query", "ZES_ICT_ALLOWLIST_QUERY"),
+                ZES_getValue("zes.ict.denylist.query", "ZES_ICT_DENYLIST_QUERY"),
+                ZES_getInt("zes.ict.filter.refresh.seconds", "ZES_ICT_FILTER_REFRESH_SECONDS", 60)
+        );
+    }
+
+    public void ZES_start()
+    {
+        boolean ZES_lv_configured = allowFile != null || denyFile != null || allowQuery != null || denyQuery != null;
+        if (!ZES_lv_configured)
+        {
+            return;
+        }
+        ZES_reload();
+        if (refreshSeconds > 0)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ZES-ICT-Filter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::ZES_reload, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean ZES_accept(long ictNumber)
+    {
+        boolean ZES_lv_hasNul = ((ictNumber - ZES_gv_ONES) & ~ictNumber & ZES_gv_HIGHS) != 0;
+        ZES_Snapshot ZES_lv_snapshot = snapshot;
+        boolean ZES_lv_accepted = ictNumber != ZES_gv_EMPTY_ICT_NUMBER && !ZES_lv_hasNul
+                && (ZES_lv_snapshot.allow == null || ZES_lv_snapshot.allow.ZES_contains(ictNumber))
+                && (ZES_lv_snapshot.deny == null || !ZES_lv_snapshot.deny.ZES_contains(ictNumber));
+        if (!ZES_lv_accepted)
+        {
+            rejected.increment();
+        }
+        return ZES_lv_accepted;
+    }
+
+    // 새 목록을 모두 읽은 뒤 한 번에 교체. 읽기에 실패하면 이전 목록을 유지한다.
+    public void ZES_reload()
+    {
+        try
+        {
+            ZES_LongHashSet ZES_lv_allow = ZES_load(allowFile, allowQuery);
+            ZES_LongHashSet ZES_lv_deny = ZES_load(denyFile, denyQuery);
+            snapshot = new ZES_Snapshot(ZES_lv_allow, ZES_lv_deny);
+            ZES_gv_logger.info("ICT filter loaded: allow=" + (ZES_lv_allow == null ? "all" : ZES_lv_allow.ZES_size())
+                    + ", deny=" + (ZES_lv_deny == null ? 0 : ZES_lv_deny.ZES_size()));
+        }
+        catch (IOException | SQLException e)
+        {
+            ZES_gv_logger.warning("Failed to reload ICT filter, keeping previous lists: " + e.getMessage());
+        }
+    }
+
+    public String ZES_stats()
+    {
+        ZES_Snapshot ZES_lv_snapshot = snapshot;
+        return "allow=" + (ZES_lv_snapshot.allow == null ? "all" : ZES_lv_snapshot.allow.ZES_size())
+                + " deny=" + (ZES_lv_snapshot.deny == null ? 0 : ZES_lv_snapshot.deny.ZES_size())
+                + " rejected=" + rejected.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static ZES_LongHashSet ZES_load(String file, String query) throws IOException, SQLException
+    {
+        if (file == null && query == null)
+        {
+            return null;
+        }
+        long[] ZES_lv_values = new long[0];
+        if (file != null)
+        {
+            ZES_lv_values = Files.readAllLines(Paths.get(file), StandardCharsets.US_ASCII).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#") && ZES_isValid(line, file))
+                    .mapToLong(ZES_IctId::ZES_toLong)
+                    .toArray();
+        }
+        if (query != null)
+        {
+            long[] ZES_lv_fromDb = ZES_queryIctNumbers(query);
+            long[] ZES_lv_merged = Arrays.copyOf(ZES_lv_values, ZES_lv_values.length + ZES_lv_fromDb.length);
+            System.arraycopy(ZES_lv_fromDb, 0, ZES_lv_merged, ZES_lv_values.length, ZES_lv_fromDb.length);
+            ZES_lv_values = ZES_lv_merged;
+        }
+        return new ZES_LongHashSet(ZES_lv_values);
+    }
+
+    // 8자가 아닌 항목은 다른 설비와 겹치거나 어느 설비와도 맞지 않으므로 경고하고 뺀다
+    private static boolean ZES_isValid(String ictNumber, String source)
+    {
+        if (ZES_IctId.ZES_isValid(ictNumber))
+        {
+            return true;
+        }
+        ZES_gv_logger.warning("Ignoring ICT number \"" + ictNumber + "\" from " + source + ": expected 8 ASCII characters");
+        return false;
+    }
+
+    // 첫 번째 컬럼을 ICT 번호로 사용
+    private static long[] ZES_queryIctNumbers(String query) throws SQLException
+    {
+        try
+        (
+            Connection ZES_lv_conn = ZES_MysqlConfig.getConnection();
+            PreparedStatement ZES_lv_statement = ZES_lv_conn.prepareStatement(query);
+            ResultSet ZES_lv_resultSet = ZES_lv_statement.executeQuery();
+        )
+        {
+            long[] ZES_lv_values = new long[64];
+            int ZES_lv_count = 0;
+            while (ZES_lv_resultSet.next())
+            {
+                String ZES_lv_ictNumber = ZES_lv_resultSet.getString(1);
+                if (ZES_lv_ictNumber == null || !ZES_isValid(ZES_lv_ictNumber.trim(), query))
+                {
+                    continue;
+                }
+                if (ZES_lv_count == ZES_lv_values.length)
+                {
+                    ZES_lv_values = Arrays.copyOf(ZES_lv_values, ZES_lv_count * 2);
+                }
+                ZES_lv_values[ZES_lv_count++] = ZES_IctId.ZES_toLong(ZES_lv_ictNumber.trim());
+            }
+            return Arrays.copyOf(ZES_lv_values, ZES_lv_count);
+        }
+    }
+
+    private static final class ZES_Snapshot
+    {
+        // null이면 제한 없음
+        private final ZES_LongHashSet allow;
+        private final ZES_LongHashSet deny;
+
+        private ZES_Snapshot(ZES_LongHashSet allow, ZES_LongHashSet deny)
+        {
+            this.allow = allow;
+            this.deny = deny;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_FrameValues;
+import com.zes.device.models.ZES_TypeMysqlDB;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getString;
+
+// decode된 프레임을 모두(conflate 전) InfluxDB에 시계열로 쓴다. MySQL realtime 테이블과 별개의 이력 저장.
+// decode 단계는 큐에 넣고 바로 돌아가고, writer 스레드 하나가 크기/시간 단위로 모아 line protocol로 만들어 gzip 한 뒤 HTTP로 보낸다.
+// 큐가 가득 차면 기다리지 않고 버린다 (이력 때문에 realtime 저장이 멈추지 않도록). zes.influx.block.ms를 주면 그만큼만 기다린다.
+public class ZES_InfluxWriter implements AutoCloseable
+{
+    private static final int ZES_gv_MAX_BACKOFF_MILLIS = 30_000;
+
+    private final URL endpoint;
+    private final String token;
+    private final boolean gzip;
+    private final int batchSize;
+    private final long flushNanos;
+    private final long blockNanos;
+    private final int retries;
+    private final int timeoutMillis;
+    private final BlockingQueue<ZES_Entry> queue;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private volatile boolean closed = false;
+    // writer가 실패한 batch를 다시 보내려고 기다리는 중. 이때는 큐가 비지 않으므로 decode 단계가 기다리지 않는다
+    private volatile boolean backingOff = false;
+    private Thread writer;
+
+    private ZES_InfluxWriter(URL endpoint, String token, boolean gzip, int batchSize, int flushMillis, int blockMillis, int queueCapacity, int retries, int timeoutMillis)
+    {
+        this.endpoint = endpoint;
+        this.token = token;
+        this.gzip = gzip;
+        this.batchSize = batchSize;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.retries = retries;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // zes.influx.url이 없으면 null (이력 저장 안 함)
+    public static ZES_InfluxWriter ZES_fromEnvironment()
+    {
+        String ZES_lv_url = ZES_getString("zes.influx.url", "ZES_INFLUX_URL", "").trim();
+        if (ZES_lv_url.isEmpty())
+        {
+            return null;
+        }
+        String ZES_lv_org = ZES_getString("zes.influx.org", "ZES_INFLUX_ORG", "");
+        String ZES_lv_bucket = ZES_getString("zes.influx.bucket", "ZES_INFLUX_BUCKET", "pms");
+        String ZES_lv_token = ZES_getString("zes.influx.token", "ZES_INFLUX_TOKEN", "");
+        boolean ZES_lv_gzip = ZES_getBoolean("zes.influx.gzip", "ZES_INFLUX_GZIP", true);
+        // 한 번에 보낼 최대 프레임(line) 수, 첫 프레임부터 보낼 때까지 기다리는 최대 시간
+        int ZES_lv_batchSize = Math.max(1, ZES_getInt("zes.influx.batch.size", "ZES_INFLUX_BATCH_SIZE", 1000));
+        int ZES_lv_flushMillis = Math.max(0, ZES_getInt("zes.influx.flush.ms", "ZES_INFLUX_FLUSH_MS", 1000));
+        // 큐가 가득 찼을 때 decode 스레드가 기다리는 최대 시간 (넘으면 버린다)
+        int ZES_lv_blockMillis = Math.max(0, ZES_getInt("zes.influx.block.ms", "ZES_INFLUX_BLOCK_MS", 0));
+        int ZES_lv_queueCapacity = Math.max(1, ZES_getInt("zes.influx.queue.capacity", "ZES_INFLUX_QUEUE_CAPACITY", 20000));
+        int ZES_lv_retries = Math.max(0, ZES_getInt("zes.influx.retries", "ZES_INFLUX_RETRIES", 5));
+        int ZES_lv_timeoutMillis = Math.max(1, ZES_getInt("zes.influx.timeout.ms", "ZES_INFLUX_TIMEOUT_MS", 10000));
+        try
+        {
+            // InfluxDB 2.x write API (1.8도 /api/v2/write 호환). 테스트할 때는 같은 경로를 받는 로컬 HTTP 서버를 지정하면 된다
+            URL ZES_lv_endpoint = new URL(ZES_lv_url.replaceAll("/+$", "") + "/api/v2/write?org=" + URLEncoder.encode(ZES_lv_org, "UTF-8")
+                    + "&bucket=" + URLEncoder.encode(ZES_lv_bucket, "UTF-8") + "&precision=ms");
+            return new ZES_InfluxWriter(ZES_lv_endpoint, ZES_lv_token, ZES_lv_gzip, ZES_lv_batchSize, ZES_lv_flushMillis, ZES_lv_blockMillis, ZES_lv_queueCapacity, ZES_lv_retries, ZES_lv_timeoutMillis);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("Invalid zes.influx.url: " + ZES_lv_url, e);
+        }
+    }
+
+    public void ZES_start()
+    {
+        writer = new Thread(this::ZES_run, "ZES-Influx");
+        writer.setDaemon(true);
+        writer.start();
+        ZES_gv_logger.info("Influx writer started: " + endpoint.getProtocol() + "://" + endpoint.getAuthority() + endpoint.getPath());
+    }
+
+    // decode 단계에서 호출. line protocol은 values의 값만 쓴다 (바뀐 필드 표시는 저장 스레드가 바꾸므로 읽지 않는다, ZES_HistoryWriter.ZES_offer 참고)
+    // block=false면 block.ms와 상관없이 기다리지 않는다 (NIO event loop)
+    public boolean ZES_offer(ZES_TypeMysqlDB frame, ZES_FrameValues values, boolean block) throws InterruptedException
+    {
+        ZES_Entry ZES_lv_entry = new ZES_Entry(frame, values);
+        if (queue.offer(ZES_lv_entry) || (block && blockNanos > 0 && !backingOff && queue.offer(ZES_lv_entry, blockNanos, TimeUnit.NANOSECONDS)))
+        {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void ZES_run()
+    {
+        List<ZES_Entry> ZES_lv_batch = new ArrayList<>(batchSize);
+        StringBuilder ZES_lv_line = new StringBuilder(4096);
+        while (true)
+        {
+            try
+            {
+                ZES_Entry ZES_lv_first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (ZES_lv_first == null)
+                {
+                    if (closed)
+                    {
+                        return;
+                    }
+                    continue;
+                }
+                ZES_lv_batch.add(ZES_lv_first);
+                ZES_Batches.ZES_fill(queue, ZES_lv_batch, batchSize, flushNanos, () -> closed);
+                ZES_send(ZES_encode(ZES_lv_batch, ZES_lv_line), ZES_lv_batch.size());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                failed.addAndGet(ZES_lv_batch.size());
+                ZES_gv_logger.warning("Influx batch of " + ZES_lv_batch.size() + " lines dropped: " + e.getMessage());
+            }
+            finally
+            {
+                ZES_lv_batch.clear();
+                backingOff = false;
+            }
+        }
+    }
+
+    // 한 줄씩 만들어 바로 gzip 스트림에 쓴다 (batch 전체 문자열을 만들지 않는다)
+    private byte[] ZES_encode(List<ZES_Entry> batch, StringBuilder line) throws IOException
+    {
+        ByteArrayOutputStream ZES_lv_body = new ByteArrayOutputStream(batch.size() * (gzip ? 256 : 2048));
+        byte[] ZES_lv_buffer = new byte[line.capacity()];
+        try (OutputStream ZES_lv_out = gzip ? new GZIPOutputStream(ZES_lv_body, 8192) : ZES_lv_body)
+        {
+            for (ZES_Entry ZES_lv_entry : batch)
+            {
+                line.setLength(0);
+                ZES_lv_entry.frame.ZES_appendLine(line, ZES_lv_entry.values);
+                if (ZES_lv_buffer.length < line.length())
+                {
+                    ZES_lv_buffer = new byte[line.capacity()];
+                }
+                int ZES_lv_length = 0;
+                boolean ZES_lv_ascii = true;
+                for (int i = 0; i < line.length() && ZES_lv_ascii; i++)
+                {
+                    char ZES_lv_char = line.charAt(i);
+                    ZES_lv_ascii = ZES_lv_char < 0x80;
+                    ZES_lv_buffer[ZES_lv_length++] = (byte) ZES_lv_char;
+                }
+                if (ZES_lv_ascii)
+                {
+                    ZES_lv_out.write(ZES_lv_buffer, 0, ZES_lv_length);
+                }
+                else
+                {
+                    ZES_lv_out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return ZES_lv_body.toByteArray();
+    }
+
+    // 연결 실패, 429, 5xx는 backoff 후 다시 보낸다. 그 밖의 4xx는 데이터 문제이므로 다시 보내지 않는다.
+    // 다시 보내는 동안 큐가 차면 decode 단계는 기다리지 않고 버린다
+    private void ZES_send(byte[] body, int lines) throws InterruptedException
+    {
+        long ZES_lv_backoff = 1000;
+        for (int ZES_lv_attempt = 0; ; ZES_lv_attempt++)
+        {
+            String ZES_lv_error;
+            long ZES_lv_retryAfter = -1;
+            try
+            {
+                HttpURLConnection ZES_lv_conn = (HttpURLConnection) endpoint.openConnection();
+                try
+                {
+                    ZES_lv_conn.setRequestMethod("POST");
+                    ZES_lv_conn.setConnectTimeout(timeoutMillis);
+                    ZES_lv_conn.setReadTimeout(timeoutMillis);
+                    ZES_lv_conn.setDoOutput(true);
+                    ZES_lv_conn.setFixedLengthStreamingMode(body.length);
+                    ZES_lv_conn.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                    if (gzip)
+                    {
+                        ZES_lv_conn.setRequestProperty("Content-Encoding", "gzip");
+                    }
+                    if (!token.isEmpty())
+                    {
+                        ZES_lv_conn.setRequestProperty("Authorization", "Token " + token);
+                    }
+                    try (OutputStream ZES_lv_out = ZES_lv_conn.getOutputStream())
+                    {
+                        ZES_lv_out.write(body);
+                    }
+                    int ZES_lv_status = ZES_lv_conn.getResponseCode();
+                    if (ZES_lv_status >= 200 && ZES_lv_status < 300)
+                    {
+                        written.addAndGet(lines);
+                        batches.incrementAndGet();
+                        sentBytes.addAndGet(body.length);
+                        return;
+                    }
+                    ZES_lv_error = "HTTP " + ZES_lv_status + " " + ZES_readError(ZES_lv_conn);
+                    if (ZES_lv_status != 429 && ZES_lv_status < 500)
+                    {
+                        failed.addAndGet(lines);
+                        ZES_gv_logger.warning("Influx rejected batch of " + lines + " lines: " + ZES_lv_error);
+                        return;
+                    }
+                    ZES_lv_retryAfter = ZES_parseRetryAfter(ZES_lv_conn.getHeaderField("Retry-After"));
+                }
+                finally
+                {
+                    ZES_lv_conn.disconnect();
+                }
+            }
+            catch (IOException e)
+            {
+                ZES_lv_error = e.toString();
+            }
+            if (ZES_lv_attempt >= retries || closed)
+            {
+                failed.addAndGet(lines);
+                ZES_gv_logger.warning("Influx batch of " + lines + " lines dropped after " + (ZES_lv_attempt + 1) + " attempts: " + ZES_lv_error);
+                return;
+            }
+            long ZES_lv_sleep = ZES_lv_retryAfter > 0 ? ZES_lv_retryAfter : ZES_lv_backoff;
+            ZES_gv_logger.warning("Influx write failed (" + ZES_lv_error + "), retrying in " + ZES_lv_sleep + " ms");
+            backingOff = true;
+            Thread.sleep(ZES_lv_sleep);
+            ZES_lv_backoff = Math.min(ZES_gv_MAX_BACKOFF_MILLIS, ZES_lv_backoff * 2);
+        }
+    }
+
+    private static String ZES_readError(HttpURLConnection conn)
+    {
+        try (InputStream ZES_lv_in = conn.getErrorStream())
+        {
+            if (ZES_lv_in == null)
+            {
+                return "";
+            }
+            byte[] ZES_lv_bytes = new byte[256];
+            int ZES_lv_length = 0;
+            int ZES_lv_read;
+            while (ZES_lv_length < ZES_lv_bytes.length && (ZES_lv_read = ZES_lv_in.read(ZES_lv_bytes, ZES_lv_length, ZES_lv_bytes.length - ZES_lv_length)) > 0)
+            {
+                ZES_lv_length += ZES_lv_read;
+            }
+            return new String(ZES_lv_bytes, 0, ZES_lv_length, StandardCharsets.UTF_8).trim();
+        }
+        catch (IOException e)
+        {
+            return "";
+        }
+    }
+
+    // Retry-After 초 단위 값 (날짜 형식은 무시하고 기본 backoff 사용)
+    private static long ZES_parseRetryAfter(String value)
+    {
+        if (value == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return Math.min(ZES_gv_MAX_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    public String ZES_stats()
+    {
+        return "queue=" + queue.size() + " written=" + written.get() + " batches=" + batches.get() + " kb=" + (sentBytes.get() >> 10)
+                + " dropped=" + dropped.get() + " failed=" + failed.get();
+    }
+
+    // 큐에 남은 프레임은 한 번씩만 보내고 끝낸다
+    @Override
+    public void close()
+    {
+        closed = true;
+        if (writer == null)
+        {
+            return;
+        }
+        try
+        {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            if (writer.isAlive())
+            {
+                ZES_gv_logger.warning("Influx writer did not finish in time, " + queue.size() + " lines not written");
+                writer.interrupt();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ZES_Entry
+    {
+        private final ZES_TypeMysqlDB frame;
+        private final ZES_FrameValues values;
+
+        private ZES_Entry(ZES_TypeMysqlDB frame, ZES_FrameValues values)
+        {
+            this.frame = frame;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_IctId;
+
+// 생성 후 변경하지 않는 long 집합 (open addressing). 조회 시 객체 생성이 없다.
+public final class ZES_LongHashSet
+{
+    private final long[] keys;
+    private final int mask;
+    private final int size;
+    // 0은 빈 칸 표시로 쓰므로 따로 관리
+    private final boolean containsZero;
+
+    public ZES_LongHashSet(long[] values)
+    {
+        int ZES_lv_capacity = Integer.highestOneBit(Math.max(2, values.length) * 2 - 1) << 1;
+        this.keys = new long[ZES_lv_capacity];
+        this.mask = ZES_lv_capacity - 1;
+        boolean ZES_lv_containsZero = false;
+        int ZES_lv_size = 0;
+        for (long ZES_lv_value : values)
+        {
+            if (ZES_lv_value == 0)
+            {
+                if (!ZES_lv_containsZero)
+                {
+                    ZES_lv_containsZero = true;
+                    ZES_lv_size++;
+                }
+                continue;
+            }
+            int i = ZES_IctId.ZES_hash(ZES_lv_value) & mask;
+            while (keys[i] != 0 && keys[i] != ZES_lv_value)
+            {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0)
+            {
+                keys[i] = ZES_lv_value;
+                ZES_lv_size++;
+            }
+        }
+        this.containsZero = ZES_lv_containsZero;
+        this.size = ZES_lv_size;
+    }
+
+    public boolean ZES_contains(long value)
+    {
+        if (value == 0)
+        {
+            return containsZero;
+        }
+        for (int i = ZES_IctId.ZES_hash(value) & mask; ; i = (i + 1) & mask)
+        {
+            long ZES_lv_key = keys[i];
+            if (ZES_lv_key == value)
+            {
+                return true;
+            }
+            if (ZES_lv_key == 0)
+            {
+                return false;
+            }
+        }
+    }
+
+    public int ZES_size()
+    {
+        return size;
+    }
+}
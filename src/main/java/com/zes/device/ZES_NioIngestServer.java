@@ -0,0 +1,460 @@
+package com.zes.device;
+
+import com.zes.device.config.ZES_IngestConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+
+// Selector 기반 수집 서버. 소수의 event loop 스레드가 다수의 설비 연결을 나눠서 처리한다.
+public class ZES_NioIngestServer implements AutoCloseable
+{
+    // streaming 연결 하나가 event loop를 독점하지 않도록 한 번의 readiness에서 처리할 최대 프레임 수
+    private static final int ZES_gv_MAX_FRAMES_PER_READ = 16;
+    private static final long ZES_gv_SELECT_TIMEOUT_MILLIS = 500;
+    // 큐가 가득 차서 멈춘 연결이 있을 때 다시 넣어 보는 간격
+    private static final long ZES_gv_RETRY_MILLIS = 5;
+    // accept 실패(EMFILE 등) 뒤 다시 accept 하기 전에 쉬는 시간
+    private static final long ZES_gv_ACCEPT_BACKOFF_MILLIS = 100;
+
+    private final ZES_Pipeline pipeline;
+    private final int port;
+    private final ZES_IngestConfig ingestConfig;
+    private final int framesPerConnection;
+    private final ZES_EventLoop[] eventLoops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean running;
+    private ServerSocketChannel[] serverChannels = new ServerSocketChannel[0];
+    private boolean reusePort;
+
+    public ZES_NioIngestServer(ZES_Pipeline pipeline, int port, ZES_IngestConfig ingestConfig)
+    {
+        this.pipeline = pipeline;
+        this.port = port;
+        this.ingestConfig = ingestConfig;
+        this.framesPerConnection = ingestConfig.ZES_getFramesPerConnection();
+        this.eventLoops = new ZES_EventLoop[ingestConfig.ZES_getNioThreads()];
+    }
+
+    public void ZES_start() throws IOException
+    {
+        running = true;
+        for (int i = 0; i < eventLoops.length; i++)
+        {
+            eventLoops[i] = new ZES_EventLoop(i);
+        }
+        // SO_REUSEPORT를 지원하면 loop마다 listening channel을 열어 커널이 연결을 분산하고, 받은 연결은 그 loop에서 처리한다.
+        // 지원하지 않으면 accept는 0번 loop가 담당하고, 연결은 round-robin으로 각 loop에 배분
+        ServerSocketChannel ZES_lv_first = ServerSocketChannel.open();
+        reusePort = eventLoops.length > 1 && ZES_lv_first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        serverChannels = new ServerSocketChannel[reusePort ? eventLoops.length : 1];
+        for (int i = 0; i < serverChannels.length; i++)
+        {
+            ServerSocketChannel ZES_lv_channel = i == 0 ? ZES_lv_first : ServerSocketChannel.open();
+            if (reusePort)
+            {
+                ZES_lv_channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            ZES_lv_channel.bind(new InetSocketAddress(port), 1024);
+            ZES_lv_channel.configureBlocking(false);
+            ZES_lv_channel.register(eventLoops[i].selector, SelectionKey.OP_ACCEPT);
+            serverChannels[i] = ZES_lv_channel;
+        }
+        for (ZES_EventLoop eventLoop : eventLoops)
+        {
+            Thread thread = new Thread(eventLoop, "ZES-NIO-Loop-" + eventLoop.loopNo);
+            thread.start();
+        }
+        ZES_gv_logger.info("NIO ingest server started on port " + port + " with " + eventLoops.length + " event loops and "
+                + serverChannels.length + " acceptors" + (reusePort ? " (SO_REUSEPORT)" : ""));
+    }
+
+    // acceptor(listening channel)별 누적 연결 수
+    public long[] ZES_getAcceptedConnections()
+    {
+        long[] ZES_lv_counts = new long[serverChannels.length];
+        for (int i = 0; i < ZES_lv_counts.length; i++)
+        {
+            ZES_lv_counts[i] = eventLoops[i].acceptedConnections.get();
+        }
+        return ZES_lv_counts;
+    }
+
+    @Override
+    public void close()
+    {
+        running = false;
+        for (ZES_EventLoop eventLoop : eventLoops)
+        {
+            if (eventLoop != null)
+            {
+                eventLoop.selector.wakeup();
+            }
+        }
+        for (ServerSocketChannel ZES_lv_channel : serverChannels)
+        {
+            try
+            {
+                ZES_lv_channel.close();
+            }
+            catch (IOException e)
+            {
+                ZES_gv_logger.warning("Error closing server channel: " + e.getMessage());
+            }
+        }
+    }
+
+    // 연결별 수신 상태. 512바이트 프레임이 완성될 때마다 하나씩 넘긴다.
+    private static final class ZES_Connection
+    {
+        private final ZES_FrameAssembler assembler;
+        private long timestamp = Instant.now().toEpochMilli();
+        private long lastActivity = System.currentTimeMillis();
+        private int frameCount = 0;
+        // 파이프라인 큐가 가득 차서 넘기지 못한 프레임. null이 아니면 이 연결은 읽지 않는다 (OP_READ 해제)
+        private ZES_Pipeline.ZES_Pending<?> pending;
+
+        private ZES_Connection(boolean resync, ZES_Pipeline pipeline)
+        {
+            this.assembler = new ZES_FrameAssembler(resync, pipeline);
+        }
+    }
+
+    private final class ZES_EventLoop implements Runnable
+    {
+        private final int loopNo;
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+        private final AtomicLong acceptedConnections = new AtomicLong();
+        // 큐가 가득 차서 읽기를 멈춘 연결. 이 loop 스레드에서만 사용
+        private final List<SelectionKey> pausedKeys = new ArrayList<>();
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        private ZES_EventLoop(int loopNo) throws IOException
+        {
+            this.loopNo = loopNo;
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (running)
+                {
+                    // event loop 스레드는 큐를 기다리지 않는다. 멈춘 연결이 있으면 짧게 select 하고 다시 넣어 본다
+                    selector.select(pausedKeys.isEmpty() ? ZES_gv_SELECT_TIMEOUT_MILLIS : ZES_gv_RETRY_MILLIS);
+                    ZES_resumePaused();
+                    ZES_registerPending();
+                    Iterator<SelectionKey> ZES_lv_keys = selector.selectedKeys().iterator();
+                    while (ZES_lv_keys.hasNext())
+                    {
+                        SelectionKey ZES_lv_key = ZES_lv_keys.next();
+                        ZES_lv_keys.remove();
+                        if (!ZES_lv_key.isValid())
+                        {
+                            continue;
+                        }
+                        if (ZES_lv_key.isAcceptable())
+                        {
+                            ZES_accept((ServerSocketChannel) ZES_lv_key.channel());
+                        }
+                        else if (ZES_lv_key.isReadable())
+                        {
+                            ZES_read(ZES_lv_key);
+                        }
+                    }
+                    ZES_closeIdleConnections();
+                }
+            }
+            catch (IOException e)
+            {
+                if (running)
+                {
+                    ZES_gv_logger.severe("IOException in NIO event loop " + loopNo + ": " + e.getMessage());
+                }
+            }
+            catch (InterruptedException e)
+            {
+                ZES_gv_logger.info("NIO event loop " + loopNo + " interrupted, shutting down");
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                ZES_closeAll();
+            }
+        }
+
+        // accept 실패나 막 끊긴 연결의 설정 실패는 그 연결만 닫고 event loop는 계속 돈다 (loop 0이 유일한 acceptor일 수 있음)
+        private void ZES_accept(ServerSocketChannel serverChannel) throws InterruptedException
+        {
+            while (true)
+            {
+                SocketChannel ZES_lv_channel;
+                try
+                {
+                    ZES_lv_channel = serverChannel.accept();
+                }
+                catch (IOException e)
+                {
+                    // 파일 디스크립터가 모자라면(EMFILE) 바로 다시 accept 해도 실패하므로 잠깐 쉰다
+                    ZES_gv_logger.warning("Accept failed in NIO event loop " + loopNo + ": " + e.getMessage());
+                    Thread.sleep(ZES_gv_ACCEPT_BACKOFF_MILLIS);
+                    return;
+                }
+                if (ZES_lv_channel == null)
+                {
+                    return;
+                }
+                acceptedConnections.incrementAndGet();
+                try
+                {
+                    ZES_lv_channel.configureBlocking(false);
+                    if (reusePort)
+                    {
+                        ZES_lv_channel.register(selector, SelectionKey.OP_READ, new ZES_Connection(ingestConfig.ZES_isResync(), pipeline));
+                        continue;
+                    }
+                }
+                catch (IOException e)
+                {
+                    ZES_gv_logger.warning("Failed to set up accepted connection in loop " + loopNo + ": " + e.getMessage());
+                    ZES_closeQuietly(ZES_lv_channel);
+                    continue;
+                }
+                ZES_EventLoop ZES_lv_loop = eventLoops[Math.floorMod(nextLoop.getAndIncrement(), eventLoops.length)];
+                ZES_lv_loop.pendingChannels.add(ZES_lv_channel);
+                ZES_lv_loop.selector.wakeup();
+            }
+        }
+
+        private void ZES_registerPending()
+        {
+            SocketChannel ZES_lv_channel;
+            while ((ZES_lv_channel = pendingChannels.poll()) != null)
+            {
+                try
+                {
+                    ZES_lv_channel.register(selector, SelectionKey.OP_READ, new ZES_Connection(ingestConfig.ZES_isResync(), pipeline));
+                }
+                catch (ClosedChannelException e)
+                {
+                    ZES_gv_logger.warning("Channel closed before registration in loop " + loopNo);
+                }
+            }
+        }
+
+        private void ZES_closeQuietly(SocketChannel channel)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                ZES_gv_logger.warning("Error closing socket: " + e.getMessage());
+            }
+        }
+
+        private void ZES_read(SelectionKey key)
+        {
+            SocketChannel ZES_lv_channel = (SocketChannel) key.channel();
+            ZES_Connection ZES_lv_connection = (ZES_Connection) key.attachment();
+            try
+            {
+                ZES_FrameAssembler ZES_lv_assembler = ZES_lv_connection.assembler;
+                int ZES_lv_frames = 0;
+                while (ZES_lv_frames < ZES_gv_MAX_FRAMES_PER_READ)
+                {
+                    int ZES_lv_bytesRead = ZES_lv_channel.read(ZES_lv_assembler.ZES_writeBuffer());
+                    ZES_lv_assembler.ZES_syncFromBuffer();
+                    if (ZES_lv_bytesRead == -1)
+                    {
+                        // streaming 연결은 프레임 경계에서 닫히면 정상 종료
+                        boolean ZES_lv_cleanClose = framesPerConnection == 0 && ZES_lv_assembler.ZES_buffered() == 0;
+                        if (!ZES_lv_cleanClose)
+                        {
+                            ZES_gv_logger.severe("Connection closed before reading complete data. Read " + ZES_lv_assembler.ZES_buffered() + " bytes");
+                        }
+                        ZES_close(key);
+                        return;
+                    }
+                    if (ZES_lv_bytesRead == 0)
+                    {
+                        return;
+                    }
+                    ZES_lv_connection.lastActivity = System.currentTimeMillis();
+                    int ZES_lv_submitted = ZES_submitFrames(key, ZES_lv_connection);
+                    if (ZES_lv_submitted < 0)
+                    {
+                        return;
+                    }
+                    ZES_lv_frames += ZES_lv_submitted;
+                }
+            }
+            catch (IOException e)
+            {
+                ZES_gv_logger.severe("IOException in NIO event loop " + loopNo + ": " + e.getMessage());
+                ZES_close(key);
+            }
+        }
+
+        // 조립된 프레임을 모두 파이프라인에 넘긴다. 큐가 가득 차서 연결을 멈췄거나 닫았으면 -1
+        private int ZES_submitFrames(SelectionKey key, ZES_Connection connection)
+        {
+            ZES_FrameAssembler ZES_lv_assembler = connection.assembler;
+            int ZES_lv_frames = 0;
+            while (ZES_lv_assembler.ZES_nextFrame())
+            {
+                if (framesPerConnection == 0)
+                {
+                    connection.timestamp = Instant.now().toEpochMilli();
+                }
+                // 프레임은 파이프라인이 복사해 가므로 넘기지 못했어도 assembler에서는 지운다
+                ZES_Pipeline.ZES_Pending<?> ZES_lv_pending = pipeline.ZES_offer(ZES_lv_assembler.ZES_array(), ZES_lv_assembler.ZES_header(), connection.timestamp);
+                ZES_lv_assembler.ZES_consumeFrame();
+                ZES_lv_frames++;
+                connection.frameCount++;
+                if (ZES_lv_pending != null)
+                {
+                    // 이 연결만 읽기를 멈춘다. 다른 연결은 계속 읽는다
+                    connection.pending = ZES_lv_pending;
+                    key.interestOps(0);
+                    pausedKeys.add(key);
+                    return -1;
+                }
+                if (connection.frameCount == framesPerConnection)
+                {
+                    ZES_close(key);
+                    return -1;
+                }
+            }
+            return ZES_lv_frames;
+        }
+
+        // 멈춘 연결의 프레임을 다시 넣어 보고, 넣었으면 버퍼에 남은 프레임을 넘긴 뒤 다시 읽기 시작한다
+        private void ZES_resumePaused()
+        {
+            if (pausedKeys.isEmpty())
+            {
+                return;
+            }
+            // 넘기는 도중 다시 멈출 수 있으므로 복사본으로 돈다
+            List<SelectionKey> ZES_lv_keys = new ArrayList<>(pausedKeys);
+            pausedKeys.clear();
+            for (SelectionKey ZES_lv_key : ZES_lv_keys)
+            {
+                if (!ZES_lv_key.isValid())
+                {
+                    continue;
+                }
+                ZES_Connection ZES_lv_connection = (ZES_Connection) ZES_lv_key.attachment();
+                if (!pipeline.ZES_retry(ZES_lv_connection.pending))
+                {
+                    pausedKeys.add(ZES_lv_key);
+                    continue;
+                }
+                ZES_lv_connection.pending = null;
+                ZES_lv_connection.lastActivity = System.currentTimeMillis();
+                if (ZES_lv_connection.frameCount == framesPerConnection)
+                {
+                    ZES_close(ZES_lv_key);
+                    continue;
+                }
+                if (ZES_submitFrames(ZES_lv_key, ZES_lv_connection) >= 0)
+                {
+                    ZES_lv_key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        private void ZES_closeIdleConnections()
+        {
+            long ZES_lv_now = System.currentTimeMillis();
+            if (ZES_lv_now - lastIdleCheck < ZES_gv_SELECT_TIMEOUT_MILLIS)
+            {
+                return;
+            }
+            lastIdleCheck = ZES_lv_now;
+            for (SelectionKey ZES_lv_key : selector.keys())
+            {
+                Object ZES_lv_attachment = ZES_lv_key.attachment();
+                if (!(ZES_lv_attachment instanceof ZES_Connection))
+                {
+                    continue;
+                }
+                ZES_Connection ZES_lv_connection = (ZES_Connection) ZES_lv_attachment;
+                if (ZES_lv_connection.pending != null)
+                {
+                    // 큐를 기다리느라 읽지 않는 연결은 timeout으로 닫지 않는다
+                    continue;
+                }
+                // 프레임 경계에서는 idle timeout, 프레임 중간이면 read timeout
+                boolean ZES_lv_atBoundary = ZES_lv_connection.assembler.ZES_buffered() == 0;
+                long ZES_lv_timeout = ZES_lv_atBoundary ? ingestConfig.ZES_getIdleTimeoutMillis() : ingestConfig.ZES_getReadTimeoutMillis();
+                if (ZES_lv_now - ZES_lv_connection.lastActivity > ZES_lv_timeout)
+                {
+                    if (ZES_lv_atBoundary && framesPerConnection == 0)
+                    {
+                        ZES_gv_logger.info("Closing idle streaming connection after " + ZES_lv_connection.frameCount + " frames");
+                    }
+                    else
+                    {
+                        ZES_gv_logger.severe("IOException in NIO event loop " + loopNo + ": Read timed out");
+                    }
+                    ZES_close(ZES_lv_key);
+                }
+            }
+        }
+
+        private void ZES_close(SelectionKey key)
+        {
+            if (key.attachment() instanceof ZES_Connection)
+            {
+                ((ZES_Connection) key.attachment()).assembler.ZES_logResync(key.channel());
+            }
+            key.cancel();
+            try
+            {
+                key.channel().close();
+            }
+            catch (IOException e)
+            {
+                ZES_gv_logger.warning("Error closing socket: " + e.getMessage());
+            }
+        }
+
+        private void ZES_closeAll()
+        {
+            SocketChannel ZES_lv_pending;
+            while ((ZES_lv_pending = pendingChannels.poll()) != null)
+            {
+                ZES_closeQuietly(ZES_lv_pending);
+            }
+            for (SelectionKey ZES_lv_key : selector.keys())
+            {
+                ZES_close(ZES_lv_key);
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException e)
+            {
+                ZES_gv_logger.warning("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+}
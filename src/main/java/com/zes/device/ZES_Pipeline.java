@@ -0,0 +1,408 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_LastStateCache;
+import com.zes.device.models.ZES_TypeMysqlDB;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.ZES_FrameDispatcher.ZES_gv_FRAME_SIZE;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+import static com.zes.device.models.ZES_IctId.ZES_hash;
+
+// 수집 파이프라인: I/O 스레드(ICT 필터) -> handoff 큐 -> decode worker(모델 생성) -> 타입별 큐 shard -> persist worker(DB 저장)
+// 단계마다 스레드 수와 큐 크기를 따로 설정하고, 큐 적재량을 통계 로그로 확인한다.
+public class ZES_Pipeline implements AutoCloseable
+{
+    private final int handoffCapacity;
+    private final int decodeThreads;
+    private final int persistThreads;
+    private final ZES_FrameTypeRegistry registry;
+    private final List<ZES_Consumer> consumers = new ArrayList<>();
+    // decode worker마다 하나. 같은 ICT 번호는 항상 같은 worker가 decode 해서 설비별 프레임 순서를 유지한다
+    private final List<BlockingQueue<ZES_RawFrame>> handoffQueues = new ArrayList<>();
+    private final ZES_FrameDispatcher dispatcher;
+    private final ZES_IctFilter ictFilter = ZES_IctFilter.ZES_fromEnvironment();
+    // zes.influx.url이 없으면 null
+    private final ZES_InfluxWriter history = ZES_InfluxWriter.ZES_fromEnvironment();
+    // zes.history.enabled=false면 null
+    private final ZES_HistoryWriter historyTables = ZES_HistoryWriter.ZES_fromEnvironment();
+    private final AtomicLong handedOff = new AtomicLong();
+    // 큐가 가득 차서 ZES_offer가 넘기지 못한 프레임 수 (그 연결은 큐가 빌 때까지 읽지 않는다)
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong decoded = new AtomicLong();
+    // TCP 연결의 assembler가 resync로 건너뛴 바이트 수와 다음 프레임을 찾은 횟수
+    private final AtomicLong resyncSkippedBytes = new AtomicLong();
+    private final AtomicLong resyncRecovered = new AtomicLong();
+    private final int batchMax;
+    private final int batchLingerMillis;
+    private final int batchTargetMillis;
+    // 저장 속도(frames/sec) 계산용. 통계 스레드에서만 사용
+    private long lastStatsNanos = System.nanoTime();
+    private long lastPersisted;
+    private ExecutorService decodeWorkers;
+    private ExecutorService persistWorkers;
+    // DB 장애 때 저장하지 못한 프레임 (zes.spill.enabled=false면 null)
+    private ZES_SpillLog spillLog;
+
+    private ZES_Pipeline(int handoffCapacity, int decodeThreads, int persistThreads, ZES_FrameTypeRegistry registry, boolean deltaEnabled, boolean skipUnchanged,
+                         int batchMax, int batchLingerMillis, int batchTargetMillis)
+    {
+        this.handoffCapacity = handoffCapacity;
+        this.decodeThreads = decodeThreads;
+        this.persistThreads = persistThreads;
+        this.registry = registry;
+        for (int i = 0; i < decodeThreads; i++)
+        {
+            handoffQueues.add(new ArrayBlockingQueue<>(handoffCapacity));
+        }
+        this.dispatcher = new ZES_FrameDispatcher(registry, persistThreads > 0, deltaEnabled, skipUnchanged, history, historyTables);
+        this.batchMax = batchMax;
+        this.batchLingerMillis = batchLingerMillis;
+        this.batchTargetMillis = batchTargetMillis;
+    }
+
+    public static ZES_Pipeline ZES_fromEnvironment()
+    {
+        int handoffCapacity = Math.max(1, ZES_getInt("zes.pipeline.handoff.capacity", "ZES_PIPELINE_HANDOFF_CAPACITY", 4096));
+        // 0이면 I/O 스레드에서 바로 decode (기존 동작)
+        int decodeThreads = Math.max(0, ZES_getInt("zes.pipeline.decode.threads", "ZES_PIPELINE_DECODE_THREADS", 2));
+        int typeQueueCapacity = Math.max(1, ZES_getInt("zes.pipeline.queue.capacity", "ZES_PIPELINE_QUEUE_CAPACITY", 1000));
+        // 0이면 DB 저장 안 함. 타입별 shard 수의 기본값 (shard 하나에 저장 스레드 하나)
+        int persistThreads = Math.max(0, ZES_getInt("zes.pipeline.persist.threads", "ZES_PIPELINE_PERSIST_THREADS", 0));
+        // 저장이 밀리면 설비별로 최신 프레임 하나만 남긴다 (realtime 테이블은 설비마다 마지막 값만 저장)
+        boolean conflate = ZES_getBoolean("zes.pipeline.conflate", "ZES_PIPELINE_CONFLATE", true);
+        ZES_FrameTypeRegistry registry = ZES_FrameTypeRegistry.ZES_defaults(persistThreads, typeQueueCapacity, conflate);
+        // 설비별 직전 프레임과 비교해서 바뀐 필드만 decode
+        boolean deltaEnabled = ZES_getBoolean("zes.pipeline.delta", "ZES_PIPELINE_DELTA", true);
+        // 바뀐 필드가 없는 프레임은 저장하지 않음 (modified_date도 갱신되지 않는다)
+        boolean skipUnchanged = ZES_getBoolean("zes.pipeline.skip.unchanged", "ZES_PIPELINE_SKIP_UNCHANGED", false);
+        // persist worker가 한 번에 저장할 최대 프레임 수 (1이면 한 건씩), batch를 채우려고 기다리는 최대 시간, 저장 한 번의 목표 시간
+        int batchMax = Math.max(1, ZES_getInt("zes.pipeline.batch.max", "ZES_PIPELINE_BATCH_MAX", 256));
+        int batchLingerMillis = Math.max(0, ZES_getInt("zes.pipeline.batch.linger.ms", "ZES_PIPELINE_BATCH_LINGER_MS", 20));
+        int batchTargetMillis = Math.max(1, ZES_getInt("zes.pipeline.batch.target.ms", "ZES_PIPELINE_BATCH_TARGET_MS", 200));
+        return new ZES_Pipeline(handoffCapacity, decodeThreads, persistThreads, registry, deltaEnabled, skipUnchanged, batchMax, batchLingerMillis, batchTargetMillis);
+    }
+
+    public void ZES_start()
+    {
+        ictFilter.ZES_start();
+        if (history != null)
+        {
+            history.ZES_start();
+        }
+        if (historyTables != null)
+        {
+            historyTables.ZES_start();
+        }
+        if (decodeThreads > 0)
+        {
+            decodeWorkers = Executors.newFixedThreadPool(decodeThreads);
+            for (int i = 0; i < decodeThreads; i++)
+            {
+                int ZES_lv_workerNo = i;
+                decodeWorkers.submit(() -> ZES_decodeLoop(ZES_lv_workerNo));
+            }
+        }
+        if (persistThreads > 0)
+        {
+            // 저장을 시작하기 전에 realtime 테이블마다 한 번씩 읽어 둔다
+            for (ZES_LastStateCache ZES_lv_state : ZES_LastStateCache.ZES_getAll())
+            {
+                ZES_lv_state.ZES_warm();
+            }
+            // 이전 실행에서 남은 프레임이 있으면 persist worker보다 먼저 replay 한다
+            spillLog = ZES_SpillLog.ZES_open(registry);
+            persistWorkers = Executors.newCachedThreadPool();
+            for (ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type : registry.ZES_getTypes())
+            {
+                for (BlockingQueue<ZES_TypeMysqlDB> ZES_lv_queue : ZES_lv_type.ZES_getQueues())
+                {
+                    ZES_Consumer ZES_lv_consumer = new ZES_Consumer(ZES_lv_queue, ZES_lv_type.ZES_gv_sink, consumers.size(), batchMax, batchLingerMillis, batchTargetMillis);
+                    consumers.add(ZES_lv_consumer);
+                    persistWorkers.submit(ZES_lv_consumer);
+                }
+            }
+        }
+        else
+        {
+            ZES_gv_logger.info("Persist workers disabled (zes.pipeline.persist.threads=0), frames are only validated and logged.");
+        }
+    }
+
+    // I/O 스레드에서 호출. 허용되지 않은 ICT는 여기서 버리고, 나머지는 프레임을 복사해서 handoff 큐에 넣고 바로 돌아간다.
+    // 큐가 가득 차면 빌 때까지 기다린다 (blocking producer, UDP)
+    public boolean ZES_submit(byte[] frame, ZES_FrameHeader header, long timestamp) throws InterruptedException
+    {
+        byte[] ZES_lv_bytes = ZES_admit(frame, header);
+        if (ZES_lv_bytes == null)
+        {
+            return false;
+        }
+        if (handoffQueues.isEmpty())
+        {
+            return dispatcher.ZES_dispatch(ZES_lv_bytes, header, timestamp);
+        }
+        handoffQueues.get(ZES_workerFor(header)).put(new ZES_RawFrame(ZES_lv_bytes, header, timestamp));
+        handedOff.incrementAndGet();
+        return true;
+    }
+
+    // NIO event loop용 ZES_submit. 다음 단계 큐(handoff, decode.threads=0이면 타입별 큐)가 가득 차면 기다리지 않고
+    // 넣지 못한 것을 돌려준다. null이면 넘겨졌거나 버린 프레임. 돌려받은 것은 ZES_retry가 true일 때까지 다시 넣는다
+    public ZES_Pending<?> ZES_offer(byte[] frame, ZES_FrameHeader header, long timestamp)
+    {
+        byte[] ZES_lv_bytes = ZES_admit(frame, header);
+        if (ZES_lv_bytes == null)
+        {
+            return null;
+        }
+        ZES_Pending<?> ZES_lv_pending = handoffQueues.isEmpty()
+                ? dispatcher.ZES_tryDispatch(ZES_lv_bytes, header, timestamp)
+                : ZES_handOff(new ZES_Pending<>(handoffQueues.get(ZES_workerFor(header)), new ZES_RawFrame(ZES_lv_bytes, header, timestamp)));
+        if (ZES_lv_pending != null)
+        {
+            deferred.incrementAndGet();
+        }
+        return ZES_lv_pending;
+    }
+
+    public boolean ZES_retry(ZES_Pending<?> pending)
+    {
+        return pending.item instanceof ZES_RawFrame ? ZES_handOff(pending) == null : pending.ZES_offer();
+    }
+
+    private ZES_Pending<?> ZES_handOff(ZES_Pending<?> pending)
+    {
+        if (!pending.ZES_offer())
+        {
+            return pending;
+        }
+        handedOff.incrementAndGet();
+        return null;
+    }
+
+    // checksum 실패(로그는 dispatcher에서 남긴다, decode 하지 않음)나 허용되지 않은 ICT면 null
+    // 아니면 이 프레임 전용 복사본. I/O 버퍼는 다음 프레임에 다시 쓰므로 여기서 한 번만 복사하고, 이후 단계(모델, spill, 이력)는 이 배열을 그대로 쓴다
+    private byte[] ZES_admit(byte[] frame, ZES_FrameHeader header)
+    {
+        if (!header.ZES_gv_valid)
+        {
+            dispatcher.ZES_tryDispatch(frame, header, 0);
+            return null;
+        }
+        if (!ictFilter.ZES_accept(header.ZES_gv_ictNumber))
+        {
+            return null;
+        }
+        byte[] ZES_lv_bytes = new byte[ZES_gv_FRAME_SIZE];
+        System.arraycopy(frame, 0, ZES_lv_bytes, 0, ZES_gv_FRAME_SIZE);
+        return ZES_lv_bytes;
+    }
+
+    // 타입별 shard(ZES_FrameType.ZES_queueFor)와 같은 hash로 worker를 고른다
+    private int ZES_workerFor(ZES_FrameHeader header)
+    {
+        return Math.floorMod(ZES_hash(header.ZES_gv_ictNumber), handoffQueues.size());
+    }
+
+    private void ZES_decodeLoop(int workerNo)
+    {
+        BlockingQueue<ZES_RawFrame> ZES_lv_queue = handoffQueues.get(workerNo);
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                ZES_RawFrame ZES_lv_frame = ZES_lv_queue.take();
+                dispatcher.ZES_dispatch(ZES_lv_frame.bytes, ZES_lv_frame.header, ZES_lv_frame.timestamp);
+                decoded.incrementAndGet();
+            }
+            catch (InterruptedException e)
+            {
+                ZES_gv_logger.info("Decode worker " + workerNo + " interrupted, shutting down");
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (RuntimeException e)
+            {
+                ZES_gv_logger.severe("Unexpected error in decode worker " + workerNo + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // ZES_FrameAssembler가 checksum이 맞지 않는 구간을 건너뛸 때 호출한다. recovered면 그 뒤에서 유효 프레임을 찾은 경우
+    public void ZES_recordResync(int skippedBytes, boolean recovered)
+    {
+        resyncSkippedBytes.addAndGet(skippedBytes);
+        if (recovered)
+        {
+            resyncRecovered.incrementAndGet();
+        }
+    }
+
+    // 단계별 큐 적재량과 처리 건수
+    public String ZES_stats()
+    {
+        StringBuilder ZES_lv_stats = new StringBuilder();
+        if (!handoffQueues.isEmpty())
+        {
+            // worker별 현재 적재량/최대
+            ZES_lv_stats.append("handoff=[");
+            for (int i = 0; i < handoffQueues.size(); i++)
+            {
+                ZES_lv_stats.append(i == 0 ? "" : " ").append(handoffQueues.get(i).size());
+            }
+            ZES_lv_stats.append("]/").append(handoffCapacity)
+                    .append(" handedOff=").append(handedOff.get())
+                    .append(" decoded=").append(decoded.get()).append(' ');
+        }
+        long ZES_lv_deferred = deferred.get();
+        if (ZES_lv_deferred > 0)
+        {
+            ZES_lv_stats.append("deferred=").append(ZES_lv_deferred).append(' ');
+        }
+        for (ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type : registry.ZES_getTypes())
+        {
+            ZES_lv_stats.append(ZES_lv_type.ZES_stats()).append(' ');
+        }
+        long ZES_lv_persisted = 0;
+        long ZES_lv_flushes = 0;
+        long ZES_lv_flushNanos = 0;
+        int ZES_lv_batchTarget = 0;
+        for (ZES_Consumer ZES_lv_consumer : consumers)
+        {
+            ZES_lv_persisted += ZES_lv_consumer.ZES_getProcessed();
+            ZES_lv_flushes += ZES_lv_consumer.ZES_getFlushes();
+            ZES_lv_flushNanos = Math.max(ZES_lv_flushNanos, ZES_lv_consumer.ZES_getFlushAverageNanos());
+            ZES_lv_batchTarget += ZES_lv_consumer.ZES_getBatchTarget();
+        }
+        long ZES_lv_now = System.nanoTime();
+        double ZES_lv_rate = (ZES_lv_persisted - lastPersisted) * 1e9 / Math.max(1, ZES_lv_now - lastStatsNanos);
+        lastPersisted = ZES_lv_persisted;
+        lastStatsNanos = ZES_lv_now;
+        ZES_lv_stats.append("persisted=").append(ZES_lv_persisted).append(" rate=").append(Math.round(ZES_lv_rate)).append("/s");
+        if (ZES_lv_flushes > 0)
+        {
+            // 평균 batch 크기, shard별 batch 목표 평균, 가장 느린 shard의 평균 저장 시간
+            ZES_lv_stats.append(" batch(avg=").append(ZES_lv_persisted / ZES_lv_flushes)
+                    .append(" target=").append(ZES_lv_batchTarget / consumers.size())
+                    .append(" flush=").append(TimeUnit.NANOSECONDS.toMillis(ZES_lv_flushNanos)).append("ms)");
+        }
+        long ZES_lv_skipped = resyncSkippedBytes.get();
+        if (ZES_lv_skipped > 0)
+        {
+            ZES_lv_stats.append(" resync(skipped=").append(ZES_lv_skipped).append(" recovered=").append(resyncRecovered.get()).append(')');
+        }
+        ZES_lv_stats.append(" ict(").append(ictFilter.ZES_stats()).append(')');
+        if (spillLog != null)
+        {
+            ZES_lv_stats.append(" spill(").append(spillLog.ZES_stats()).append(')');
+        }
+        if (history != null)
+        {
+            ZES_lv_stats.append(" influx(").append(history.ZES_stats()).append(')');
+        }
+        if (historyTables != null)
+        {
+            ZES_lv_stats.append(" history(").append(historyTables.ZES_stats()).append(')');
+        }
+        if (!consumers.isEmpty() && ZES_LastStateCache.ZES_gv_ENABLED)
+        {
+            ZES_lv_stats.append(" state(");
+            String ZES_lv_separator = "";
+            for (ZES_LastStateCache ZES_lv_state : ZES_LastStateCache.ZES_getAll())
+            {
+                ZES_lv_stats.append(ZES_lv_separator).append(ZES_lv_state.ZES_stats());
+                ZES_lv_separator = ", ";
+            }
+            ZES_lv_stats.append(')');
+        }
+        return ZES_lv_stats.toString();
+    }
+
+    @Override
+    public void close()
+    {
+        ictFilter.close();
+        ZES_shutdown(decodeWorkers, "Decode");
+        ZES_shutdown(persistWorkers, "Consumer");
+        if (spillLog != null)
+        {
+            // 남은 프레임은 다음 시작 때 replay 한다
+            spillLog.close();
+        }
+        if (history != null)
+        {
+            // decode가 끝난 뒤 남은 이력을 보낸다
+            history.close();
+        }
+        if (historyTables != null)
+        {
+            historyTables.close();
+        }
+    }
+
+    private static void ZES_shutdown(ExecutorService workers, String label)
+    {
+        if (workers == null)
+        {
+            return;
+        }
+        workers.shutdown();
+        try
+        {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                ZES_gv_logger.warning(label + " threads did not terminate gracefully, forcing shutdown");
+                workers.shutdownNow();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            ZES_gv_logger.severe("Shutdown interrupted");
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 큐가 가득 차서 넘기지 못한 항목과 넣을 큐
+    public static final class ZES_Pending<E>
+    {
+        private final BlockingQueue<E> queue;
+        private final E item;
+
+        ZES_Pending(BlockingQueue<E> queue, E item)
+        {
+            this.queue = queue;
+            this.item = item;
+        }
+
+        boolean ZES_offer()
+        {
+            return queue.offer(item);
+        }
+    }
+
+    private static final class ZES_RawFrame
+    {
+        private final byte[] bytes;
+        private final ZES_FrameHeader header;
+        private final long timestamp;
+
+        private ZES_RawFrame(byte[] bytes, ZES_FrameHeader header, long timestamp)
+        {
+            this.bytes = bytes;
+            this.header = header.ZES_copy();
+            this.timestamp = timestamp;
+        }
+    }
+}
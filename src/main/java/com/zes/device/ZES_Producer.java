@@ -1,43 +1,87 @@
 package com.zes.device;
 
-import com.zes.device.models.*;
-
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zes.device.config.ZES_IngestConfig;
 
 import static com.zes.device.ZES_DeviceApplication.*;
+import static com.zes.device.ZES_FrameDispatcher.ZES_gv_FRAME_SIZE;
 
 public class ZES_Producer implements Runnable {
-    private static final int ZES_gv_BUFFER_SIZE = 512;
-    private static final int ZES_gv_CHECKSUM_OFFSET = 510;
-    private static final int ZES_gv_CHECKSUM_SIZE = 2;
-    private static final int ZES_gv_INFO_TYPE_OFFSET = 9;
-    private static final int ZES_gv_INFO_TYPE_SIZE = 1;
-    private static final int ZES_gv_ICT_NUMBER_OFFSET = 10;
-    private static final int ZES_gv_ICT_NUMBER_SIZE = 8;
-
-    private final BlockingQueue<ZES_TypeMysqlDB> queueType0;
-    private final BlockingQueue<ZES_TypeMysqlDB> queueType1;
-    private final BlockingQueue<ZES_TypeMysqlDB> queueType2;
-    private final BlockingQueue<ZES_TypeMysqlDB> queueType3;
-    private final BlockingQueue<ZES_TypeMysqlDB> queueType4;
+    private final ZES_Pipeline pipeline;
     private final int threadNo;
     private final ServerSocket serverSocket;
-    public ZES_Producer(BlockingQueue<ZES_TypeMysqlDB> queueType0, BlockingQueue<ZES_TypeMysqlDB> queueType1, BlockingQueue<ZES_TypeMysqlDB> queueType2, BlockingQueue<ZES_TypeMysqlDB> queueType3, BlockingQueue<ZES_TypeMysqlDB> queueType4, int threadNo, ServerSocket serverSocket)
+    private final ZES_IngestConfig ingestConfig;
+    private final ExecutorService connectionExecutor;
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    public ZES_Producer(ZES_Pipeline pipeline, int threadNo, ServerSocket serverSocket, ZES_IngestConfig ingestConfig)
+    {
+        this(pipeline, threadNo, serverSocket, ingestConfig, null);
+    }
+
+    // connectionExecutor가 있으면 accept만 하고 읽기는 연결별 스레드(가상 스레드)에 넘긴다.
+    public ZES_Producer(ZES_Pipeline pipeline, int threadNo, ServerSocket serverSocket, ZES_IngestConfig ingestConfig, ExecutorService connectionExecutor)
     {
-        this.queueType0 = queueType0;
-        this.queueType1 = queueType1;
-        this.queueType2 = queueType2;
-        this.queueType3 = queueType3;
-        this.queueType4 = queueType4;
+        this.pipeline = pipeline;
         this.threadNo = threadNo;
         this.serverSocket = serverSocket;
+        this.ingestConfig = ingestConfig;
+        this.connectionExecutor = connectionExecutor;
+    }
+
+    // SO_REUSEPORT를 지원하면 acceptor마다 listening socket을 따로 열어 커널이 연결을 분산하도록 한다.
+    // 지원하지 않으면 하나의 socket을 모든 acceptor가 같이 accept 한다.
+    public static ServerSocket[] ZES_openServerSockets(int port, int count) throws IOException
+    {
+        ServerSocket[] ZES_lv_sockets = new ServerSocket[count];
+        ServerSocket ZES_lv_first = new ServerSocket();
+        boolean ZES_lv_reusePort = count > 1 && ZES_lv_first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0 && !ZES_lv_reusePort)
+            {
+                ZES_lv_sockets[i] = ZES_lv_first;
+                continue;
+            }
+            ServerSocket ZES_lv_socket = i == 0 ? ZES_lv_first : new ServerSocket();
+            if (ZES_lv_reusePort)
+            {
+                ZES_lv_socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            ZES_lv_socket.bind(new InetSocketAddress(port), 1024);
+            ZES_lv_sockets[i] = ZES_lv_socket;
+        }
+        ZES_gv_logger.info("Listening on port " + port + " with " + count + " acceptors" + (ZES_lv_reusePort ? " (SO_REUSEPORT)" : ""));
+        return ZES_lv_sockets;
+    }
+
+    public long ZES_getAcceptedConnections()
+    {
+        return acceptedConnections.get();
+    }
+
+    // Java 21 이상이면 가상 스레드 executor, 아니면 연결당 플랫폼 스레드로 대체
+    public static ExecutorService ZES_newVirtualThreadExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            ZES_gv_logger.warning("Virtual threads are not available on this JVM, using a cached thread pool instead");
+            return Executors.newCachedThreadPool();
+        }
     }
 
     @Override
@@ -58,11 +102,16 @@ public class ZES_Producer implements Runnable {
             try
             {
                 Socket ZES_lv_socket = serverSocket.accept();
-                LocalDateTime now = LocalDateTime.now();
-                DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-                ZES_lv_socket.setSoTimeout(2000);
-                System.out.println("data receive time => "+ now.format(fmt));
-                ZES_readBytesAndEnqueue(ZES_lv_socket);
+                acceptedConnections.incrementAndGet();
+                ZES_lv_socket.setSoTimeout(ingestConfig.ZES_getReadTimeoutMillis());
+                if (connectionExecutor != null)
+                {
+                    connectionExecutor.execute(() -> ZES_handleConnection(ZES_lv_socket));
+                }
+                else
+                {
+                    ZES_readBytesAndEnqueue(ZES_lv_socket);
+                }
             }
             catch (IOException e)
             {
@@ -80,6 +129,22 @@ public class ZES_Producer implements Runnable {
         }
     }
 
+    private void ZES_handleConnection(Socket socket)
+    {
+        try
+        {
+            ZES_readBytesAndEnqueue(socket);
+        }
+        catch (IOException e)
+        {
+            ZES_gv_logger.severe("IOException in connection thread of producer " + threadNo + ": " + e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void ZES_readBytesAndEnqueue(Socket socket) throws IOException, InterruptedException
     {
         try
@@ -87,66 +152,61 @@ public class ZES_Producer implements Runnable {
             long ZES_lv_timestamp = Instant.now().toEpochMilli();
             InputStream ZES_lv_inputStream = socket.getInputStream();
             // Read bytes from the input stream - 전체 데이터를 보장하기 위해 루프로 읽기
-            byte[] ZES_lv_buffer = new byte[ZES_gv_BUFFER_SIZE];
+            ZES_FrameAssembler ZES_lv_assembler = new ZES_FrameAssembler(ingestConfig.ZES_isResync(), pipeline);
+            byte[] ZES_lv_buffer = ZES_lv_assembler.ZES_array();
+            boolean ZES_lv_streaming = ingestConfig.ZES_isStreaming();
+            int ZES_lv_framesPerConnection = ingestConfig.ZES_getFramesPerConnection();
 
-            for(int ci = 0; ci < 5; ci++)
+            try
             {
-                int ZES_lv_totalBytesRead = 0;
-
-                while (ZES_lv_totalBytesRead < ZES_gv_BUFFER_SIZE)
+                for(int ci = 0; ZES_lv_framesPerConnection == 0 || ci < ZES_lv_framesPerConnection; ci++)
                 {
-                    int ZES_lv_bytesRead = ZES_lv_inputStream.read(ZES_lv_buffer, ZES_lv_totalBytesRead, ZES_gv_BUFFER_SIZE - ZES_lv_totalBytesRead);
-
-                    if (ZES_lv_bytesRead == -1)
+                    while (!ZES_lv_assembler.ZES_nextFrame())
                     {
-                        throw new IOException("Connection closed before reading complete data. Read " + ZES_lv_totalBytesRead + " bytes");
-                    }
+                        int ZES_lv_bytesRead;
+                        if (ZES_lv_streaming && ZES_lv_assembler.ZES_buffered() == 0)
+                        {
+                            // 프레임 경계에서는 idle timeout 동안 다음 프레임을 기다린다
+                            socket.setSoTimeout(ingestConfig.ZES_getIdleTimeoutMillis());
+                            try
+                            {
+                                ZES_lv_bytesRead = ZES_lv_inputStream.read(ZES_lv_buffer, 0, ZES_lv_assembler.ZES_writable());
+                            }
+                            catch (SocketTimeoutException e)
+                            {
+                                ZES_gv_logger.info("Closing idle streaming connection from " + socket.getRemoteSocketAddress() + " after " + ci + " frames");
+                                return;
+                            }
+                            if (ZES_lv_bytesRead == -1)
+                            {
+                                return;
+                            }
+                            socket.setSoTimeout(ingestConfig.ZES_getReadTimeoutMillis());
+                        }
+                        else
+                        {
+                            ZES_lv_bytesRead = ZES_lv_inputStream.read(ZES_lv_buffer, ZES_lv_assembler.ZES_buffered(), ZES_lv_assembler.ZES_writable());
+                        }
 
-                    ZES_lv_totalBytesRead += ZES_lv_bytesRead;
-                }
+                        if (ZES_lv_bytesRead == -1)
+                        {
+                            throw new IOException("Connection closed before reading complete data. Read " + ZES_lv_assembler.ZES_buffered() + " bytes");
+                        }
 
-                if(ZES_validateCheckSum(ZES_lv_buffer))
-                {
-                    int ZES_lv_infoType = (int) ZES_convertByteArrayToLong(ZES_lv_buffer, ZES_gv_INFO_TYPE_OFFSET, ZES_gv_INFO_TYPE_SIZE);
-                    String ZES_lv_ictNumber = ZES_convertByteArrayToString(ZES_lv_buffer, ZES_gv_ICT_NUMBER_OFFSET, ZES_gv_ICT_NUMBER_SIZE);
+                        ZES_lv_assembler.ZES_advance(ZES_lv_bytesRead);
+                    }
 
-                    if(ZES_filterIctNumber(ZES_lv_ictNumber))
+                    if (ZES_lv_streaming)
                     {
-                        System.out.println(" ZES_lv_infoType =>"+ ZES_lv_infoType);
-                        System.out.println(" ZES_lv_ictNumber =>"+ ZES_lv_ictNumber);
-                        switch (ZES_lv_infoType)
-                        {
-                            case 0:
-                                queueType0.put(new ZES_Type0(ZES_lv_timestamp, ZES_lv_buffer, ZES_lv_ictNumber));
-//                            ZES_gv_logger.info("thread" + threadNo + " in queue : " + queueType0.size());
-                                break;
-                            case 1:
-                                queueType1.put(new ZES_Type1(ZES_lv_timestamp, ZES_lv_buffer, ZES_lv_ictNumber));
-//                            ZES_gv_logger.info("thread" + threadNo + " in queue : " + queueType1.size());
-                                break;
-                            case 2:
-                                queueType2.put(new ZES_Type2(ZES_lv_timestamp, ZES_lv_buffer, ZES_lv_ictNumber));
-//                            ZES_gv_logger.info("thread" + threadNo + " in queue : " + queueType2.size());
-                                break;
-                            case 3:
-                                queueType3.put(new ZES_Type3(ZES_lv_timestamp, ZES_lv_buffer, ZES_lv_ictNumber));
-//                            ZES_gv_logger.info("thread" + threadNo + " in queue : " + queueType3.size());
-                                break;
-                            case 4:
-                                queueType4.put(new ZES_Type4(ZES_lv_timestamp, ZES_lv_buffer, ZES_lv_ictNumber));
-//                            ZES_gv_logger.info("thread" + threadNo + " in queue : " + queueType4.size());
-                                break;
-                            default:
-                                ZES_gv_logger.warning("Unknown info type: " + ZES_lv_infoType + " from ICT: " + ZES_lv_ictNumber);
-                                break;
-                        }
+                        ZES_lv_timestamp = Instant.now().toEpochMilli();
                     }
+                    pipeline.ZES_submit(ZES_lv_buffer, ZES_lv_assembler.ZES_header(), ZES_lv_timestamp);
+                    ZES_lv_assembler.ZES_consumeFrame();
                 }
-                else
-                {
-                    ZES_gv_logger.warning("Checksum validation failed for ICT: " +
-                            ZES_convertByteArrayToString(ZES_lv_buffer, ZES_gv_ICT_NUMBER_OFFSET, ZES_gv_ICT_NUMBER_SIZE));
-                }
+            }
+            finally
+            {
+                ZES_lv_assembler.ZES_logResync(socket.getRemoteSocketAddress());
             }
         }
         catch (IOException e)
@@ -171,20 +231,4 @@ public class ZES_Producer implements Runnable {
             }
         }
     }
-
-    private static boolean ZES_validateCheckSum(byte[] dataBuffer)
-    {
-//        return true;
-        long ZES_lv_checkSum = 0;
-        for (int i = 0; i < 510; i++)
-        {
-            ZES_lv_checkSum += dataBuffer[i] & 0xff;
-        }
-        return ZES_lv_checkSum == ZES_convertByteArrayToLong(dataBuffer, ZES_gv_CHECKSUM_OFFSET, ZES_gv_CHECKSUM_SIZE);
-    }
-
-    private boolean ZES_filterIctNumber(String ictNumber)
-    {
-        return !ictNumber.equals("P0000000") && !ictNumber.contains("\u0000");
-    }
 }
@@ -1,6 +1,8 @@
 package com.zes.device;
 
 import com.zes.device.models.ZES_Data;
+import com.zes.device.models.ZES_FrameLayout;
+import com.zes.device.models.ZES_FrameValues;
 
 import java.sql.*;
 import java.time.Instant;
@@ -8,93 +10,413 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getString;
 
 public class ZES_SQLGenerator
 {
-    public static String addQuote(Object value)
+    // flag 필드 저장 방식. columns: 필드마다 컬럼(기본) / packed: 64개씩 BIGINT 컬럼 flag_bits_0, flag_bits_1, ... / blob: flag_bits 한 컬럼(VARBINARY)
+    public static final String ZES_gv_FLAG_STORAGE = ZES_getString("zes.storage.flags", "ZES_STORAGE_FLAGS", "columns").toLowerCase();
+    // realtime 테이블을 INSERT ... ON DUPLICATE KEY UPDATE 한 번으로 저장 (ict_number가 PRIMARY/UNIQUE KEY여야 함)
+    public static final boolean ZES_gv_UPSERT = ZES_getBoolean("zes.storage.upsert", "ZES_STORAGE_UPSERT", true);
+    // UPDATE 방식. full: 모든 컬럼(기본) / changed: 마지막 저장 값(ZES_LastStateCache)과 달라진 컬럼만
+    public static final boolean ZES_gv_CHANGED_ONLY = "changed".equals(ZES_getString("zes.storage.update", "ZES_STORAGE_UPDATE", "full").toLowerCase());
+    // changed 방식에서 달라진 컬럼이 없는 프레임. touch: modified_date만 갱신(기본) / skip: 저장하지 않음
+    public static final boolean ZES_gv_SKIP_UNCHANGED = "skip".equals(ZES_getString("zes.storage.unchanged", "ZES_STORAGE_UNCHANGED", "touch").toLowerCase());
+    // 레이아웃별 ON DUPLICATE KEY UPDATE 절 (값과 무관하므로 한 번만 만든다)
+    private static final Map<ZES_FrameLayout, String> ZES_gv_upsertClauses = new ConcurrentHashMap<>();
+    // 테이블별 parameter(?) SQL. 값은 PreparedStatement에 bind 하므로 문장은 테이블마다 하나다
+    private static final Map<String, String> ZES_gv_insertStatements = new ConcurrentHashMap<>();
+    private static final Map<String, String> ZES_gv_upsertStatements = new ConcurrentHashMap<>();
+    private static final Map<String, String> ZES_gv_updateStatements = new ConcurrentHashMap<>();
+    // 테이블별, 달라진 컬럼 조합별 UPDATE SQL. 조합이 상한을 넘으면 그 뒤 조합은 캐시하지 않고 그때마다 만든다
+    private static final Map<String, Map<ZES_ColumnSet, String>> ZES_gv_changedStatements = new ConcurrentHashMap<>();
+    private static final int ZES_gv_MAX_CHANGED_STATEMENTS = 4096;
+    // 레이아웃별 flag가 아닌 필드 bit (packed/blob은 flag를 필드가 아니라 flag_bits 컬럼으로 저장)
+    private static final Map<ZES_FrameLayout, long[]> ZES_gv_valueFieldMasks = new ConcurrentHashMap<>();
+    private static final Map<String, DateTimeFormatter> ZES_gv_formatters = new ConcurrentHashMap<>();
+    // 저장하는 시각은 한국 시간 기준
+    private static final ZoneOffset ZES_gv_ZONE = ZoneOffset.ofHours(9);
+
+    // session이 들고 있는 statement를 쓴다. 호출하는 쪽은 ResultSet만 닫는다
+    public static ResultSet findByIctNumber(ZES_SqlSession session, String ictNumber, String tableName) throws SQLException
     {
-        return "'" + value + "'";
+        PreparedStatement ZES_lv_prepStmt = session.ZES_prepare("SELECT * FROM " + tableName + " WHERE ict_number=?");
+        ZES_lv_prepStmt.setString(1, ictNumber);
+        return ZES_lv_prepStmt.executeQuery();
     }
 
-    public static PreparedStatement findByIctNumber(Connection conn, String ictNumber, String tableName) throws SQLException {
-        String ZES_lv_selectQuery = String.format("SELECT * FROM %s WHERE ict_number=?", tableName);
-        PreparedStatement ZES_lv_prepStmt = conn.prepareStatement(ZES_lv_selectQuery);
-        ZES_lv_prepStmt.setString(1, ictNumber);
-        return ZES_lv_prepStmt;
+    // created_date는 처음 INSERT 될 때 값을 유지하고, 나머지 컬럼과 modified_date만 갱신한다
+    public static String getUpsertClause(ZES_FrameValues values)
+    {
+        return ZES_gv_upsertClauses.computeIfAbsent(values.ZES_layout(), layout -> ZES_buildUpsertClause(values));
+    }
+
+    // INSERT INTO t VALUES(?, ..., ?): ict_number, 컬럼 값, created_date, modified_date
+    public static String getInsertStatement(ZES_FrameValues values, String tableName)
+    {
+        return ZES_gv_insertStatements.computeIfAbsent(tableName, table ->
+        {
+            StringBuilder ZES_lv_builder = new StringBuilder("INSERT INTO ").append(table).append(" VALUES(?, ");
+            for (int i = ZES_columnCount(values); i > 0; i--)
+            {
+                ZES_lv_builder.append("?, ");
+            }
+            return ZES_lv_builder.append("?, ?)").toString();
+        });
+    }
+
+    // INSERT INTO t VALUES(?, ...), (?, ...), ... 행 rows개. 행 구성은 getInsertStatement와 같다 (이력 테이블용, 캐시는 호출하는 쪽에서)
+    public static String getMultiInsertStatement(ZES_FrameValues values, String tableName, int rows)
+    {
+        int ZES_lv_parameters = getInsertParameterCount(values);
+        StringBuilder ZES_lv_builder = new StringBuilder(32 + rows * ZES_lv_parameters * 3).append("INSERT INTO ").append(tableName).append(" VALUES");
+        for (int r = 0; r < rows; r++)
+        {
+            ZES_lv_builder.append(r == 0 ? "(?" : ", (?");
+            for (int i = 1; i < ZES_lv_parameters; i++)
+            {
+                ZES_lv_builder.append(", ?");
+            }
+            ZES_lv_builder.append(')');
+        }
+        return ZES_lv_builder.toString();
+    }
+
+    // INSERT 한 행의 parameter 수: ict_number, 컬럼 값, created_date, modified_date
+    public static int getInsertParameterCount(ZES_FrameValues values)
+    {
+        return ZES_columnCount(values) + 3;
+    }
+
+    public static String getUpsertStatement(ZES_FrameValues values, String tableName)
+    {
+        return ZES_gv_upsertStatements.computeIfAbsent(tableName, table -> getInsertStatement(values, table) + getUpsertClause(values));
+    }
+
+    // UPDATE t SET c=?, ..., modified_date=? WHERE ict_number=?
+    public static String getUpdateStatement(ZES_FrameValues values, String tableName)
+    {
+        return ZES_gv_updateStatements.computeIfAbsent(tableName, table -> ZES_buildUpdateStatement(values, table, false));
+    }
+
+    // 달라진 컬럼만. 컬럼 조합마다 문장이 다르므로 테이블별로 조합을 키로 캐시한다 (조합마다 한 번만 만든다)
+    public static String getChangedUpdateStatement(ZES_FrameValues values, String tableName)
+    {
+        Map<ZES_ColumnSet, String> ZES_lv_statements = ZES_gv_changedStatements.computeIfAbsent(tableName, table -> new ConcurrentHashMap<>());
+        ZES_ColumnSet ZES_lv_columns = ZES_changedColumns(values);
+        String ZES_lv_sql = ZES_lv_statements.get(ZES_lv_columns);
+        if (ZES_lv_sql == null)
+        {
+            ZES_lv_sql = ZES_buildUpdateStatement(values, tableName, true);
+            if (ZES_lv_statements.size() < ZES_gv_MAX_CHANGED_STATEMENTS)
+            {
+                ZES_lv_statements.putIfAbsent(ZES_lv_columns, ZES_lv_sql);
+            }
+        }
+        return ZES_lv_sql;
+    }
+
+    // ZES_buildUpdateStatement(changedOnly)가 SET 할 컬럼. 필드 bit 뒤에 flag_bits 컬럼 word를 하나 더 둔다
+    private static ZES_ColumnSet ZES_changedColumns(ZES_FrameValues values)
+    {
+        int ZES_lv_count = values.ZES_newValueWordCount();
+        long[] ZES_lv_words = new long[ZES_lv_count + 1];
+        if (ZES_isFlagColumns())
+        {
+            for (int w = 0; w < ZES_lv_count; w++)
+            {
+                ZES_lv_words[w] = values.ZES_getNewValueWord(w);
+            }
+            return new ZES_ColumnSet(ZES_lv_words);
+        }
+        long[] ZES_lv_mask = ZES_gv_valueFieldMasks.computeIfAbsent(values.ZES_layout(), ZES_SQLGenerator::ZES_valueFieldMask);
+        long ZES_lv_flagWords = 0;
+        for (int w = 0; w < ZES_lv_count; w++)
+        {
+            long ZES_lv_new = values.ZES_getNewValueWord(w);
+            ZES_lv_words[w] = ZES_lv_new & ZES_lv_mask[w];
+            // 바뀐 flag 필드만 돌며 flag_bits 컬럼 word를 모은다 (ZES_changedFlagWords와 같은 결과)
+            for (long ZES_lv_flags = ZES_lv_new & ~ZES_lv_mask[w]; ZES_lv_flags != 0; ZES_lv_flags &= ZES_lv_flags - 1)
+            {
+                int ZES_lv_field = (w << 6) + Long.numberOfTrailingZeros(ZES_lv_flags);
+                ZES_lv_flagWords |= 1L << (values.ZES_layout().ZES_flagBit(ZES_lv_field) >>> 6);
+            }
+        }
+        // blob은 바뀐 flag가 있으면 flag_bits 한 컬럼
+        ZES_lv_words[ZES_lv_count] = "packed".equals(ZES_gv_FLAG_STORAGE) ? ZES_lv_flagWords : ZES_lv_flagWords != 0 ? 1L : 0L;
+        return new ZES_ColumnSet(ZES_lv_words);
+    }
+
+    private static long[] ZES_valueFieldMask(ZES_FrameLayout layout)
+    {
+        long[] ZES_lv_mask = new long[(layout.ZES_size() + 63) >>> 6];
+        for (int i = 0; i < layout.ZES_size(); i++)
+        {
+            if (layout.ZES_flagBit(i) < 0)
+            {
+                ZES_lv_mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return ZES_lv_mask;
     }
 
-    public static String getInsertErrorNumQuery(String ictNumber, long flag, long errorNum, String tableName, long timestamp) {
-        return String.format("INSERT INTO %s VALUES(%s, %s, %s, %s)", tableName, addQuote(ictNumber), addQuote(flag), addQuote(errorNum), convertTimestampToMySQLTimestamp(timestamp) );
+    private static String ZES_buildUpdateStatement(ZES_FrameValues values, String tableName, boolean changedOnly)
+    {
+        StringBuilder ZES_lv_builder = new StringBuilder(64 + (changedOnly ? 0 : values.ZES_size() * 16)).append("UPDATE ").append(tableName).append(" SET ");
+        boolean ZES_lv_flagColumns = ZES_isFlagColumns();
+        for (int i = 0; i < values.ZES_size(); i++)
+        {
+            if ((changedOnly && !values.ZES_isNewValue(i)) || (!ZES_lv_flagColumns && ZES_isFlag(values, i)))
+            {
+                continue;
+            }
+            ZES_lv_builder.append(values.ZES_field(i).ZES_gv_key).append("=?, ");
+        }
+        long ZES_lv_words = changedOnly ? ZES_changedFlagWords(values) : -1L;
+        if (!ZES_lv_flagColumns && values.ZES_flagWordCount() > 0 && ZES_lv_words != 0)
+        {
+            if ("packed".equals(ZES_gv_FLAG_STORAGE))
+            {
+                for (int w = 0; w < values.ZES_flagWordCount(); w++)
+                {
+                    if ((ZES_lv_words & (1L << w)) != 0)
+                    {
+                        ZES_lv_builder.append("flag_bits_").append(w).append("=?, ");
+                    }
+                }
+            }
+            else
+            {
+                ZES_lv_builder.append("flag_bits=?, ");
+            }
+        }
+        return ZES_lv_builder.append("modified_date=? WHERE ict_number=?").toString();
     }
 
-    public static String getInsertQuery(ZES_Data[] dataMap, String ictNumber, String tableName, long timestamp) {
-        return String.format("INSERT INTO %s VALUES(%s, %s)", tableName, addQuote(ictNumber), formatInsertValues(dataMap, timestamp) );
+    // getInsertStatement/getUpsertStatement 한 행
+    public static void bindInsert(PreparedStatement statement, ZES_FrameValues values, String ictNumber, long timestamp) throws SQLException
+    {
+        bindInsertRow(statement, 1, values, ictNumber, timestamp);
     }
 
-    public static String getUpdateQuery(ZES_Data[] dataMap, String ictNumber, String tableName, long timestamp) {
-        return String.format("UPDATE %s SET %s WHERE ict_number=%s", tableName, formatUpdateValues(dataMap, timestamp), addQuote(ictNumber));
+    // getMultiInsertStatement의 한 행. 다음 행의 첫 parameter index를 돌려준다
+    public static int bindInsertRow(PreparedStatement statement, int index, ZES_FrameValues values, String ictNumber, long timestamp) throws SQLException
+    {
+        statement.setString(index, ictNumber);
+        int ZES_lv_index = ZES_bindValues(statement, index + 1, values, false);
+        LocalDateTime ZES_lv_timestamp = convertTimestampToLocalDateTime(timestamp);
+        statement.setObject(ZES_lv_index, ZES_lv_timestamp);
+        statement.setObject(ZES_lv_index + 1, ZES_lv_timestamp);
+        return ZES_lv_index + 2;
     }
 
-    public static void insert(Connection conn, ZES_Data[] dataMap, String ictNumber, String tableName, long timestamp) throws SQLException
+    // getUpdateStatement(changedOnly=false) / getChangedUpdateStatement(changedOnly=true) 한 행
+    public static void bindUpdate(PreparedStatement statement, ZES_FrameValues values, String ictNumber, long timestamp, boolean changedOnly) throws SQLException
     {
-        String insertQuery = getInsertQuery(dataMap, ictNumber, tableName, timestamp);
-        executeQuery(conn, insertQuery);
+        int ZES_lv_index = ZES_bindValues(statement, 1, values, changedOnly);
+        statement.setObject(ZES_lv_index, convertTimestampToLocalDateTime(timestamp));
+        statement.setString(ZES_lv_index + 1, ictNumber);
     }
 
-    public static void update(Connection conn, ZES_Data[] dataMap, String tableName, String ictNumber, long timestamp) throws SQLException
+    // decode 결과(primitive)를 문자열 없이 그대로 bind 한다. 다음 parameter 위치를 돌려준다
+    private static int ZES_bindValues(PreparedStatement statement, int index, ZES_FrameValues values, boolean changedOnly) throws SQLException
     {
-        String updateQuery = getUpdateQuery(dataMap, ictNumber, tableName, timestamp);
-        executeQuery(conn, updateQuery);
+        boolean ZES_lv_flagColumns = ZES_isFlagColumns();
+        for (int i = 0; i < values.ZES_size(); i++)
+        {
+            if ((changedOnly && !values.ZES_isNewValue(i)) || (!ZES_lv_flagColumns && ZES_isFlag(values, i)))
+            {
+                continue;
+            }
+            switch (values.ZES_field(i).ZES_gv_kind)
+            {
+                case ZES_Data.ZES_gv_KIND_DOUBLE:
+                    statement.setDouble(index++, values.ZES_getDouble(i));
+                    break;
+                case ZES_Data.ZES_gv_KIND_TIME:
+                    statement.setString(index++, values.ZES_getString(i));
+                    break;
+                default:
+                    statement.setLong(index++, values.ZES_getLong(i));
+                    break;
+            }
+        }
+        long ZES_lv_words = changedOnly ? ZES_changedFlagWords(values) : -1L;
+        if (ZES_lv_flagColumns || values.ZES_flagWordCount() == 0 || ZES_lv_words == 0)
+        {
+            return index;
+        }
+        if ("packed".equals(ZES_gv_FLAG_STORAGE))
+        {
+            for (int w = 0; w < values.ZES_flagWordCount(); w++)
+            {
+                if ((ZES_lv_words & (1L << w)) != 0)
+                {
+                    statement.setLong(index++, values.ZES_getFlagWord(w));
+                }
+            }
+            return index;
+        }
+        statement.setBytes(index++, ZES_flagBytes(values));
+        return index;
     }
 
-    public static void executeQuery(Connection conn, String query) throws SQLException {
-        try (Statement statement = conn.createStatement()) {
-            statement.executeUpdate(query);
+    // flag를 빼고(packed/blob) 컬럼 수 + flag bitmask 컬럼 수. ict_number와 날짜 컬럼은 제외
+    private static int ZES_columnCount(ZES_FrameValues values)
+    {
+        if (ZES_isFlagColumns())
+        {
+            return values.ZES_size();
+        }
+        int ZES_lv_count = values.ZES_size() - values.ZES_layout().ZES_flagCount();
+        if (values.ZES_flagWordCount() > 0)
+        {
+            ZES_lv_count += "packed".equals(ZES_gv_FLAG_STORAGE) ? values.ZES_flagWordCount() : 1;
         }
-        // Connection은 호출하는 쪽(try-with-resources)에서 관리
+        return ZES_lv_count;
     }
 
-    public static void executeBatchQuery(Connection conn, List<String> queries) throws SQLException
+    private static String ZES_buildUpsertClause(ZES_FrameValues values)
     {
-        try (Statement statement = conn.createStatement())
+        StringBuilder ZES_lv_builder = new StringBuilder(" ON DUPLICATE KEY UPDATE ");
+        boolean ZES_lv_flagColumns = ZES_isFlagColumns();
+        for (int i = 0; i < values.ZES_size(); i++)
+        {
+            if (!ZES_lv_flagColumns && ZES_isFlag(values, i))
+            {
+                continue;
+            }
+            ZES_appendValuesReference(ZES_lv_builder, values.ZES_field(i).ZES_gv_key);
+        }
+        if (!ZES_lv_flagColumns && values.ZES_flagWordCount() > 0)
         {
-            for (String query: queries)
+            if ("packed".equals(ZES_gv_FLAG_STORAGE))
+            {
+                for (int w = 0; w < values.ZES_flagWordCount(); w++)
+                {
+                    ZES_appendValuesReference(ZES_lv_builder, "flag_bits_" + w);
+                }
+            }
+            else
             {
-                statement.addBatch(query);
+                ZES_appendValuesReference(ZES_lv_builder, "flag_bits");
             }
-            statement.executeBatch();
         }
-        // Connection은 호출하는 쪽(try-with-resources)에서 관리
+        return ZES_lv_builder.append("modified_date=VALUES(modified_date)").toString();
+    }
+
+    private static void ZES_appendValuesReference(StringBuilder builder, String column)
+    {
+        builder.append(column).append("=VALUES(").append(column).append("), ");
+    }
+
+    public static void upsert(ZES_SqlSession session, ZES_FrameValues values, String ictNumber, String tableName, long timestamp) throws SQLException
+    {
+        PreparedStatement ZES_lv_statement = session.ZES_prepare(getUpsertStatement(values, tableName));
+        bindInsert(ZES_lv_statement, values, ictNumber, timestamp);
+        ZES_lv_statement.executeUpdate();
+    }
+
+    public static void insert(ZES_SqlSession session, ZES_FrameValues values, String ictNumber, String tableName, long timestamp) throws SQLException
+    {
+        PreparedStatement ZES_lv_statement = session.ZES_prepare(getInsertStatement(values, tableName));
+        bindInsert(ZES_lv_statement, values, ictNumber, timestamp);
+        ZES_lv_statement.executeUpdate();
     }
 
-    public static String formatInsertValues(ZES_Data[] dataMap, long timestamp)
+    public static void update(ZES_SqlSession session, ZES_FrameValues values, String tableName, String ictNumber, long timestamp) throws SQLException
     {
-        List<String> values = Arrays.stream(dataMap).map(data -> addQuote(String.valueOf(data.ZES_gv_value))).collect(Collectors.toList());
-        values.add(convertTimestampToMySQLTimestamp(timestamp));
-        values.add(convertTimestampToMySQLTimestamp(timestamp));
-        return String.join(", ", values);
+        PreparedStatement ZES_lv_statement = session.ZES_prepare(getUpdateStatement(values, tableName));
+        bindUpdate(ZES_lv_statement, values, ictNumber, timestamp, false);
+        ZES_lv_statement.executeUpdate();
     }
 
-    public static String formatUpdateValues(ZES_Data[] dataMap, long timestamp)
+    // 행이 없으면 0을 돌려준다 (호출하는 쪽에서 INSERT로 다시 저장)
+    public static int updateChanged(ZES_SqlSession session, ZES_FrameValues values, String tableName, String ictNumber, long timestamp) throws SQLException
     {
-        List<String> values = Arrays.stream(dataMap).map(data -> data.ZES_gv_key + "=" + addQuote(data.ZES_gv_value)).collect(Collectors.toList());
-        values.add("modified_date=" + convertTimestampToMySQLTimestamp(timestamp));
-        return String.join(", ", values);
+        PreparedStatement ZES_lv_statement = session.ZES_prepare(getChangedUpdateStatement(values, tableName));
+        bindUpdate(ZES_lv_statement, values, ictNumber, timestamp, true);
+        return ZES_lv_statement.executeUpdate();
     }
 
-    public static String convertTimestampToMySQLTimestamp(long timestamp)
+    public static boolean ZES_isFlagColumns()
     {
-        return addQuote(convertTimestampToDateFormat(timestamp, "yyyy-MM-dd HH:mm:ss.SSS"));
+        return !"packed".equals(ZES_gv_FLAG_STORAGE) && !"blob".equals(ZES_gv_FLAG_STORAGE);
+    }
+
+    private static boolean ZES_isFlag(ZES_FrameValues values, int index)
+    {
+        return values.ZES_layout().ZES_flagBit(index) >= 0;
+    }
+
+    // packed/blob: 바뀐 flag가 들어 있는 word (bit w = flag_bits_w)
+    private static long ZES_changedFlagWords(ZES_FrameValues values)
+    {
+        if (ZES_isFlagColumns())
+        {
+            return 0L;
+        }
+        long ZES_lv_changedWords = 0;
+        for (int i = 0; i < values.ZES_size(); i++)
+        {
+            if (values.ZES_isNewValue(i) && ZES_isFlag(values, i))
+            {
+                ZES_lv_changedWords |= 1L << (values.ZES_layout().ZES_flagBit(i) >>> 6);
+            }
+        }
+        return ZES_lv_changedWords;
+    }
+
+    // blob: bit i -> byte i/8 의 (i%8)번째 bit
+    private static byte[] ZES_flagBytes(ZES_FrameValues values)
+    {
+        byte[] ZES_lv_bytes = new byte[(values.ZES_layout().ZES_flagCount() + 7) >>> 3];
+        for (int b = 0; b < ZES_lv_bytes.length; b++)
+        {
+            ZES_lv_bytes[b] = (byte) (values.ZES_getFlagWord(b >>> 3) >>> ((b & 7) << 3));
+        }
+        return ZES_lv_bytes;
+    }
+
+    public static LocalDateTime convertTimestampToLocalDateTime(long timestamp)
+    {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZES_gv_ZONE);
     }
 
     public static String convertTimestampToDateFormat(long timestamp, String dateFormat) {
         // Convert Unix timestamp to LocalDateTime
-        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.ofHours(9));
-        // Create a DateTimeFormatter for the desired format
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(dateFormat);
+        LocalDateTime localDateTime = convertTimestampToLocalDateTime(timestamp);
+        // DateTimeFormatter는 thread-safe 하므로 형식마다 한 번만 만든다
+        DateTimeFormatter formatter = ZES_gv_formatters.computeIfAbsent(dateFormat, DateTimeFormatter::ofPattern);
         // Format the LocalDateTime as a MySQL timestamp string
         return localDateTime.format(formatter);
     }
+
+    private static final class ZES_ColumnSet
+    {
+        private final long[] words;
+        private final int hash;
+
+        private ZES_ColumnSet(long[] words)
+        {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof ZES_ColumnSet && Arrays.equals(((ZES_ColumnSet) other).words, words);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
 }
@@ -0,0 +1,612 @@
+package com.zes.device;
+
+import com.zes.device.models.ZES_IctId;
+import com.zes.device.models.ZES_TypeMysqlDB;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getString;
+
+// DB 장애로 저장하지 못한 프레임을 memory-mapped segment 파일에 남기고, DB가 돌아오면 replay 스레드가 순서대로 다시 저장한다.
+// segment: [magic 4][version 4][replay offset 8] + record([length 4][crc32 4][infoType 4][timestamp 8][ict 8][frame]) ...
+// 남은 record가 있는 설비의 새 프레임은 DB 대신 여기에 붙여서, 늦게 replay 되는 이전 값이 최신 값을 덮어쓰지 않게 한다 (다른 설비는 바로 저장).
+// replay는 스레드 하나가 하므로, 장애가 길었으면 남은 설비가 다 따라잡을 때까지 그 설비 저장은 replay 속도로 제한된다 (stats의 lag).
+public final class ZES_SpillLog implements AutoCloseable
+{
+    private static final int ZES_gv_MAGIC = 0x5A53504C; // "ZSPL"
+    private static final int ZES_gv_VERSION = 1;
+    private static final int ZES_gv_HEADER_SIZE = 16;
+    private static final int ZES_gv_READ_OFFSET = 8;
+    private static final int ZES_gv_RECORD_HEADER_SIZE = 8;
+    private static final int ZES_gv_PAYLOAD_HEADER_SIZE = 20;
+    private static final long ZES_gv_MAX_BACKOFF_MILLIS = 30_000;
+    private static final int ZES_gv_SEGMENT_NAME_LENGTH = "spill-".length() + 20 + ".log".length();
+    private static volatile ZES_SpillLog ZES_gv_instance;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final int replayBatch;
+    private final ZES_FrameTypeRegistry registry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // 오래된 것부터. 마지막이 새 record를 붙이는 active segment
+    private final ArrayDeque<ZES_Segment> segments = new ArrayDeque<>();
+    private ZES_Segment active;
+    private long nextSequence = 0;
+    private long totalBytes = 0;
+    // replay 하지 않은 record 수
+    private long pending = 0;
+    private boolean dirty = false;
+    private volatile boolean backlogged = false;
+    // 설비(ZES_IctId.ZES_gv_value)별 replay 하지 않은 record 수. 0이 되면 지운다 (변경은 lock 안에서)
+    private final Map<Long, Integer> backlog = new ConcurrentHashMap<>();
+    // 지금 replay 중인 가장 오래된 record의 수신 시각 (epoch ms)
+    private volatile long replayHead = 0;
+    private volatile boolean closed = false;
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong corrupt = new AtomicLong();
+    private Thread replayer;
+
+    private ZES_SpillLog(Path dir, int segmentBytes, long maxBytes, int replayBatch, ZES_FrameTypeRegistry registry)
+    {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.replayBatch = replayBatch;
+        this.registry = registry;
+    }
+
+    // 남아 있는 segment를 읽어 들이고 replay 스레드를 시작한다. zes.spill.enabled=false면 null
+    public static ZES_SpillLog ZES_open(ZES_FrameTypeRegistry registry)
+    {
+        if (!ZES_getBoolean("zes.spill.enabled", "ZES_SPILL_ENABLED", true))
+        {
+            return null;
+        }
+        Path ZES_lv_dir = Paths.get(ZES_getString("zes.spill.dir", "ZES_SPILL_DIR", "spill"));
+        int ZES_lv_segmentBytes = Math.max(1, ZES_getInt("zes.spill.segment.mb", "ZES_SPILL_SEGMENT_MB", 64)) << 20;
+        long ZES_lv_maxBytes = (long) Math.max(1, ZES_getInt("zes.spill.max.mb", "ZES_SPILL_MAX_MB", 2048)) << 20;
+        int ZES_lv_replayBatch = Math.max(1, ZES_getInt("zes.spill.replay.batch", "ZES_SPILL_REPLAY_BATCH", 256));
+        ZES_SpillLog ZES_lv_log = new ZES_SpillLog(ZES_lv_dir, ZES_lv_segmentBytes, ZES_lv_maxBytes, ZES_lv_replayBatch, registry);
+        try
+        {
+            ZES_lv_log.ZES_recover();
+        }
+        catch (IOException e)
+        {
+            ZES_gv_logger.severe("Failed to open spill log " + ZES_lv_dir.toAbsolutePath() + ", frames that cannot be saved will be dropped: " + e.getMessage());
+            return null;
+        }
+        ZES_lv_log.replayer = new Thread(ZES_lv_log::ZES_replayLoop, "ZES-SpillReplay");
+        ZES_lv_log.replayer.setDaemon(true);
+        ZES_lv_log.replayer.start();
+        ZES_gv_instance = ZES_lv_log;
+        return ZES_lv_log;
+    }
+
+    // 저장 경로에서 호출. true면 DB에 쓰지 말고 spill 해야 한다 (이 설비의 replay 할 record가 남아 있음)
+    public static boolean ZES_isBacklogged(ZES_IctId ictId)
+    {
+        ZES_SpillLog ZES_lv_log = ZES_gv_instance;
+        return ZES_lv_log != null && ZES_lv_log.backlogged && ZES_lv_log.backlog.containsKey(ictId.ZES_gv_value);
+    }
+
+    // spill이 꺼져 있거나 크기 상한에 걸리면 false (그 프레임은 저장되지 않는다)
+    public static boolean ZES_append(int infoType, long timestamp, ZES_IctId ictId, byte[] frame)
+    {
+        ZES_SpillLog ZES_lv_log = ZES_gv_instance;
+        return ZES_lv_log != null && ZES_lv_log.ZES_write(infoType, timestamp, ictId, frame);
+    }
+
+    // DB 연결 문제(재시작, 네트워크, pool timeout)처럼 나중에 다시 하면 될 오류. 그 밖의 오류는 데이터 문제로 본다
+    public static boolean ZES_isOutage(SQLException e)
+    {
+        String ZES_lv_state = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException || e instanceof SQLNonTransientConnectionException
+                || (ZES_lv_state != null && (ZES_lv_state.startsWith("08") || ZES_lv_state.equals("40001")));
+    }
+
+    private boolean ZES_write(int infoType, long timestamp, ZES_IctId ictId, byte[] frame)
+    {
+        // payload와 CRC는 lock 밖에서 만든다
+        ByteBuffer ZES_lv_payload = ByteBuffer.allocate(ZES_gv_PAYLOAD_HEADER_SIZE + frame.length);
+        ZES_lv_payload.putInt(infoType).putLong(timestamp).putLong(ictId.ZES_gv_value).put(frame).flip();
+        CRC32 ZES_lv_crc = new CRC32();
+        ZES_lv_crc.update(ZES_lv_payload.duplicate());
+        int ZES_lv_recordSize = ZES_gv_RECORD_HEADER_SIZE + ZES_lv_payload.remaining();
+        lock.lock();
+        try
+        {
+            if (closed)
+            {
+                return false;
+            }
+            if (active == null || active.writeOffset + ZES_lv_recordSize > active.capacity)
+            {
+                if (ZES_gv_HEADER_SIZE + ZES_lv_recordSize > segmentBytes || totalBytes + segmentBytes > maxBytes)
+                {
+                    ZES_logRejected(rejected.incrementAndGet());
+                    return false;
+                }
+                if (active != null)
+                {
+                    active.buffer.force();
+                }
+                active = ZES_create();
+            }
+            MappedByteBuffer ZES_lv_buffer = active.buffer;
+            int ZES_lv_offset = active.writeOffset;
+            ByteBuffer ZES_lv_target = ZES_lv_buffer.duplicate();
+            ZES_lv_target.position(ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE);
+            ZES_lv_target.put(ZES_lv_payload);
+            // 길이를 마지막에 써서, 쓰다 만 record는 길이 0 또는 CRC 불일치로 드러나게 한다
+            ZES_lv_buffer.putInt(ZES_lv_offset + 4, (int) ZES_lv_crc.getValue());
+            ZES_lv_buffer.putInt(ZES_lv_offset, ZES_lv_recordSize - ZES_gv_RECORD_HEADER_SIZE);
+            active.writeOffset += ZES_lv_recordSize;
+            pending++;
+            backlog.merge(ictId.ZES_gv_value, 1, Integer::sum);
+            dirty = true;
+            backlogged = true;
+            spilled.incrementAndGet();
+            notEmpty.signal();
+            return true;
+        }
+        catch (IOException e)
+        {
+            ZES_gv_logger.severe("Failed to write spill log: " + e.getMessage());
+            return false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private static void ZES_logRejected(long count)
+    {
+        // 상한에 걸린 동안 로그가 넘치지 않게 1, 2, 4, 8, ... 번째만 남긴다
+        if (Long.bitCount(count) == 1)
+        {
+            ZES_gv_logger.severe("Spill log is full (zes.spill.max.mb), " + count + " frames dropped so far");
+        }
+    }
+
+    private void ZES_replayLoop()
+    {
+        long ZES_lv_backoff = 1000;
+        while (!closed)
+        {
+            try
+            {
+                List<ZES_Record> ZES_lv_records = ZES_next();
+                if (ZES_lv_records.isEmpty())
+                {
+                    continue;
+                }
+                if (ZES_replay(ZES_lv_records))
+                {
+                    ZES_commit(ZES_lv_records);
+                    ZES_lv_backoff = 1000;
+                }
+                else
+                {
+                    Thread.sleep(ZES_lv_backoff);
+                    ZES_lv_backoff = Math.min(ZES_gv_MAX_BACKOFF_MILLIS, ZES_lv_backoff * 2);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                ZES_gv_logger.severe("Unexpected error in spill replay: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // 가장 오래된 segment에서 다음 record를 최대 replayBatch개 복사해 온다. 없으면 최대 1초 기다린다 (그 사이 active segment를 디스크에 내린다)
+    private List<ZES_Record> ZES_next() throws InterruptedException, IOException
+    {
+        lock.lock();
+        try
+        {
+            if (pending == 0)
+            {
+                if (dirty && active != null)
+                {
+                    active.buffer.force();
+                    dirty = false;
+                }
+                notEmpty.await(1, TimeUnit.SECONDS);
+            }
+            while (!segments.isEmpty())
+            {
+                ZES_Segment ZES_lv_segment = segments.peekFirst();
+                if (ZES_lv_segment.readOffset < ZES_lv_segment.writeOffset)
+                {
+                    return ZES_read(ZES_lv_segment);
+                }
+                if (ZES_lv_segment == active)
+                {
+                    break;
+                }
+                ZES_delete(segments.pollFirst());
+            }
+            return Collections.emptyList();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private List<ZES_Record> ZES_read(ZES_Segment segment)
+    {
+        List<ZES_Record> ZES_lv_records = new ArrayList<>(Math.min(replayBatch, 64));
+        ByteBuffer ZES_lv_buffer = segment.buffer.duplicate();
+        int ZES_lv_offset = segment.readOffset;
+        replayHead = segment.buffer.getLong(ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE + 4);
+        while (ZES_lv_records.size() < replayBatch && ZES_lv_offset < segment.writeOffset)
+        {
+            int ZES_lv_length = ZES_lv_buffer.getInt(ZES_lv_offset);
+            ZES_lv_buffer.position(ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE);
+            int ZES_lv_infoType = ZES_lv_buffer.getInt();
+            long ZES_lv_timestamp = ZES_lv_buffer.getLong();
+            long ZES_lv_ictId = ZES_lv_buffer.getLong();
+            byte[] ZES_lv_frame = new byte[ZES_lv_length - ZES_gv_PAYLOAD_HEADER_SIZE];
+            ZES_lv_buffer.get(ZES_lv_frame);
+            ZES_lv_offset += ZES_gv_RECORD_HEADER_SIZE + ZES_lv_length;
+            ZES_lv_records.add(new ZES_Record(segment, ZES_lv_offset, ZES_lv_infoType, ZES_lv_timestamp, ZES_lv_ictId, ZES_lv_frame));
+        }
+        return ZES_lv_records;
+    }
+
+    // 타입별로 묶어 sink.ZES_replay로 저장한다. DB 장애면 false (같은 record를 나중에 다시 replay)
+    // 데이터 문제로 실패한 묶음은 한 건씩 다시 저장하고, 그래도 실패하는 프레임은 로그를 남기고 건너뛴다
+    private boolean ZES_replay(List<ZES_Record> records)
+    {
+        Map<ZES_FrameTypeRegistry.ZES_FrameType, List<ZES_TypeMysqlDB>> ZES_lv_groups = new LinkedHashMap<>();
+        for (ZES_Record ZES_lv_record : records)
+        {
+            ZES_FrameTypeRegistry.ZES_FrameType ZES_lv_type = registry.ZES_lookup(ZES_lv_record.infoType);
+            if (ZES_lv_type == null)
+            {
+                skipped.incrementAndGet();
+                continue;
+            }
+            ZES_lv_groups.computeIfAbsent(ZES_lv_type, type -> new ArrayList<>())
+                    .add(ZES_lv_type.ZES_gv_decoder.ZES_decode(ZES_lv_record.timestamp, ZES_lv_record.frame, ZES_IctId.ZES_of(ZES_lv_record.ictId)));
+        }
+        for (Map.Entry<ZES_FrameTypeRegistry.ZES_FrameType, List<ZES_TypeMysqlDB>> ZES_lv_group : ZES_lv_groups.entrySet())
+        {
+            ZES_FrameTypeRegistry.ZES_Sink ZES_lv_sink = ZES_lv_group.getKey().ZES_gv_sink;
+            try
+            {
+                ZES_lv_sink.ZES_replay(ZES_lv_group.getValue());
+                continue;
+            }
+            catch (SQLException e)
+            {
+                if (ZES_isOutage(e))
+                {
+                    ZES_gv_logger.warning("Spill replay waiting for database (" + pending + " frames pending): " + e.getMessage());
+                    return false;
+                }
+            }
+            for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_group.getValue())
+            {
+                try
+                {
+                    ZES_lv_sink.ZES_replay(Collections.singletonList(ZES_lv_frame));
+                }
+                catch (SQLException e)
+                {
+                    if (ZES_isOutage(e))
+                    {
+                        return false;
+                    }
+                    skipped.incrementAndGet();
+                    ZES_gv_logger.severe("Spilled frame from " + ZES_lv_frame.ZES_gv_ictNumber + " could not be saved, skipping: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    // replay 한 위치를 segment header에 남긴다. 다 읽은 segment는 지운다
+    private void ZES_commit(List<ZES_Record> records) throws IOException
+    {
+        ZES_Record ZES_lv_last = records.get(records.size() - 1);
+        ZES_Segment ZES_lv_segment = ZES_lv_last.segment;
+        lock.lock();
+        try
+        {
+            ZES_lv_segment.readOffset = ZES_lv_last.endOffset;
+            ZES_lv_segment.buffer.putLong(ZES_gv_READ_OFFSET, ZES_lv_last.endOffset);
+            dirty = true;
+            pending -= records.size();
+            replayed.addAndGet(records.size());
+            for (ZES_Record ZES_lv_record : records)
+            {
+                backlog.computeIfPresent(ZES_lv_record.ictId, (ict, count) -> count > 1 ? count - 1 : null);
+            }
+            if (ZES_lv_segment.readOffset >= ZES_lv_segment.writeOffset && ZES_lv_segment != active && segments.peekFirst() == ZES_lv_segment)
+            {
+                ZES_delete(segments.pollFirst());
+            }
+            if (pending == 0)
+            {
+                backlogged = false;
+                backlog.clear();
+                ZES_gv_logger.info("Spill log drained (" + replayed.get() + " frames replayed)");
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // 시작할 때 남아 있는 segment를 이름(순번) 순으로 열어 replay 위치부터 끝(길이 0, 범위 밖, CRC 불일치)까지 확인한다
+    private void ZES_recover() throws IOException
+    {
+        Files.createDirectories(dir);
+        List<Path> ZES_lv_files = new ArrayList<>();
+        try (DirectoryStream<Path> ZES_lv_stream = Files.newDirectoryStream(dir, "spill-*.log"))
+        {
+            for (Path ZES_lv_file : ZES_lv_stream)
+            {
+                ZES_lv_files.add(ZES_lv_file);
+            }
+        }
+        Collections.sort(ZES_lv_files);
+        for (Path ZES_lv_file : ZES_lv_files)
+        {
+            String ZES_lv_name = ZES_lv_file.getFileName().toString();
+            // ZES_create가 만드는 이름(spill-<20자리 순번>.log)만 segment로 본다. 이름 순서가 곧 순번 순서다
+            long ZES_lv_sequence = ZES_lv_name.length() == ZES_gv_SEGMENT_NAME_LENGTH ? ZES_parseSequence(ZES_lv_name) : -1;
+            if (ZES_lv_sequence < 0)
+            {
+                ZES_gv_logger.warning("Ignoring unexpected file in spill directory " + ZES_lv_file);
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, ZES_lv_sequence + 1);
+            ZES_Segment ZES_lv_segment = ZES_map(ZES_lv_file, (int) Math.min(Integer.MAX_VALUE, Files.size(ZES_lv_file)));
+            if (ZES_lv_segment.capacity < ZES_gv_HEADER_SIZE || ZES_lv_segment.buffer.getInt(0) != ZES_gv_MAGIC)
+            {
+                ZES_gv_logger.warning("Ignoring invalid spill segment " + ZES_lv_file);
+                ZES_lv_segment.channel.close();
+                continue;
+            }
+            long ZES_lv_readOffset = ZES_lv_segment.buffer.getLong(ZES_gv_READ_OFFSET);
+            ZES_lv_segment.readOffset = (int) Math.max(ZES_gv_HEADER_SIZE, Math.min(ZES_lv_readOffset, ZES_lv_segment.capacity));
+            ZES_lv_segment.writeOffset = ZES_lv_segment.readOffset;
+            pending += ZES_scan(ZES_lv_segment);
+            totalBytes += ZES_lv_segment.capacity;
+            segments.addLast(ZES_lv_segment);
+        }
+        // 남은 segment는 다시 쓰지 않는다 (새 record는 새 segment에)
+        backlogged = pending > 0;
+        if (!segments.isEmpty())
+        {
+            ZES_gv_logger.info("Spill log " + dir.toAbsolutePath() + ": " + pending + " frames to replay in " + segments.size() + " segments");
+        }
+    }
+
+    // 숫자가 아니거나 long 범위를 넘으면 -1
+    private static long ZES_parseSequence(String name)
+    {
+        long ZES_lv_sequence = 0;
+        for (int i = "spill-".length(); i < name.length() - ".log".length(); i++)
+        {
+            char ZES_lv_digit = name.charAt(i);
+            if (ZES_lv_digit < '0' || ZES_lv_digit > '9' || ZES_lv_sequence > (Long.MAX_VALUE - 9) / 10)
+            {
+                return -1;
+            }
+            ZES_lv_sequence = ZES_lv_sequence * 10 + (ZES_lv_digit - '0');
+        }
+        return ZES_lv_sequence;
+    }
+
+    private long ZES_scan(ZES_Segment segment)
+    {
+        ByteBuffer ZES_lv_buffer = segment.buffer.duplicate();
+        long ZES_lv_count = 0;
+        int ZES_lv_offset = segment.writeOffset;
+        while (ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE <= segment.capacity)
+        {
+            int ZES_lv_length = ZES_lv_buffer.getInt(ZES_lv_offset);
+            if (ZES_lv_length == 0)
+            {
+                break;
+            }
+            int ZES_lv_end = ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE + ZES_lv_length;
+            boolean ZES_lv_valid = ZES_lv_length >= ZES_gv_PAYLOAD_HEADER_SIZE && ZES_lv_end > ZES_lv_offset && ZES_lv_end <= segment.capacity;
+            if (ZES_lv_valid)
+            {
+                ByteBuffer ZES_lv_payload = segment.buffer.duplicate();
+                ZES_lv_payload.limit(ZES_lv_end).position(ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE);
+                CRC32 ZES_lv_crc = new CRC32();
+                ZES_lv_crc.update(ZES_lv_payload);
+                ZES_lv_valid = (int) ZES_lv_crc.getValue() == ZES_lv_buffer.getInt(ZES_lv_offset + 4);
+            }
+            if (!ZES_lv_valid)
+            {
+                // 쓰다 만 record (비정상 종료). 이 뒤는 믿을 수 없으므로 여기까지만 replay 한다
+                corrupt.incrementAndGet();
+                ZES_gv_logger.warning("Spill segment " + segment.path.getFileName() + " is truncated at offset " + ZES_lv_offset);
+                break;
+            }
+            backlog.merge(ZES_lv_buffer.getLong(ZES_lv_offset + ZES_gv_RECORD_HEADER_SIZE + 12), 1, Integer::sum);
+            ZES_lv_offset = ZES_lv_end;
+            ZES_lv_count++;
+        }
+        segment.writeOffset = ZES_lv_offset;
+        return ZES_lv_count;
+    }
+
+    private ZES_Segment ZES_create() throws IOException
+    {
+        Path ZES_lv_path = dir.resolve(String.format("spill-%020d.log", nextSequence++));
+        ZES_Segment ZES_lv_segment = ZES_map(ZES_lv_path, segmentBytes);
+        ZES_lv_segment.buffer.putInt(0, ZES_gv_MAGIC);
+        ZES_lv_segment.buffer.putInt(4, ZES_gv_VERSION);
+        ZES_lv_segment.buffer.putLong(ZES_gv_READ_OFFSET, ZES_gv_HEADER_SIZE);
+        ZES_lv_segment.readOffset = ZES_gv_HEADER_SIZE;
+        ZES_lv_segment.writeOffset = ZES_gv_HEADER_SIZE;
+        totalBytes += segmentBytes;
+        segments.addLast(ZES_lv_segment);
+        return ZES_lv_segment;
+    }
+
+    private static ZES_Segment ZES_map(Path path, int size) throws IOException
+    {
+        FileChannel ZES_lv_channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            return new ZES_Segment(path, ZES_lv_channel, ZES_lv_channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+        catch (IOException e)
+        {
+            ZES_lv_channel.close();
+            throw e;
+        }
+    }
+
+    private void ZES_delete(ZES_Segment segment) throws IOException
+    {
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        totalBytes -= segment.capacity;
+    }
+
+    public String ZES_stats()
+    {
+        lock.lock();
+        try
+        {
+            long ZES_lv_lag = pending > 0 && replayHead > 0 ? Math.max(0, System.currentTimeMillis() - replayHead) / 1000 : 0;
+            return "pending=" + pending + " devices=" + backlog.size() + " lag=" + ZES_lv_lag + "s segments=" + segments.size() + " mb=" + (totalBytes >> 20) + " spilled=" + spilled.get() + " replayed=" + replayed.get()
+                    + " skipped=" + skipped.get() + " rejected=" + rejected.get() + " corrupt=" + corrupt.get();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // replay를 멈추고 segment를 디스크에 내린다. 남은 record는 다음 시작 때 replay 한다
+    @Override
+    public void close()
+    {
+        closed = true;
+        if (replayer != null)
+        {
+            replayer.interrupt();
+            try
+            {
+                replayer.join(TimeUnit.SECONDS.toMillis(10));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try
+        {
+            for (ZES_Segment ZES_lv_segment : segments)
+            {
+                ZES_lv_segment.buffer.force();
+                ZES_lv_segment.channel.close();
+            }
+            segments.clear();
+            active = null;
+        }
+        catch (IOException e)
+        {
+            ZES_gv_logger.warning("Failed to close spill log: " + e.getMessage());
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (ZES_gv_instance == this)
+        {
+            ZES_gv_instance = null;
+        }
+    }
+
+    private static final class ZES_Segment
+    {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int readOffset;
+        private int writeOffset;
+
+        private ZES_Segment(Path path, FileChannel channel, MappedByteBuffer buffer)
+        {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+    }
+
+    private static final class ZES_Record
+    {
+        private final ZES_Segment segment;
+        private final int endOffset;
+        private final int infoType;
+        private final long timestamp;
+        private final long ictId;
+        private final byte[] frame;
+
+        private ZES_Record(ZES_Segment segment, int endOffset, int infoType, long timestamp, long ictId, byte[] frame)
+        {
+            this.segment = segment;
+            this.endOffset = endOffset;
+            this.infoType = infoType;
+            this.timestamp = timestamp;
+            this.ictId = ictId;
+            this.frame = frame;
+        }
+    }
+}
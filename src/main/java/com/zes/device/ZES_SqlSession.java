@@ -0,0 +1,112 @@
+package com.zes.device;
+
+import com.zes.device.config.ZES_MysqlConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+
+// 저장 스레드마다 connection 하나를 잡아 두고, 그 connection에서 만든 PreparedStatement를 SQL별로 재사용한다.
+// pool에서 매번 빌리고 statement를 새로 만드는 비용이 없고, 서버는 문장을 한 번만 parse 한다(useServerPrepStmts).
+// SQL 오류가 나거나 zes.storage.pin.minutes가 지나면 connection을 pool에 돌려주고 다음 사용 때 새로 잡는다.
+public final class ZES_SqlSession
+{
+    private static final long ZES_gv_PIN_NANOS = TimeUnit.MINUTES.toNanos(Math.max(1, ZES_getInt("zes.storage.pin.minutes", "ZES_STORAGE_PIN_MINUTES", 30)));
+    // 스레드별로 들고 있는 statement 수 (바뀐 컬럼만 UPDATE 하면 컬럼 조합마다 SQL이 다르다)
+    private static final int ZES_gv_STATEMENT_CACHE = Math.max(8, ZES_getInt("zes.storage.statement.cache", "ZES_STORAGE_STATEMENT_CACHE", 128));
+    private static final ThreadLocal<ZES_SqlSession> ZES_gv_current = ThreadLocal.withInitial(ZES_SqlSession::new);
+
+    private Connection connection;
+    private long pinnedAt;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(32, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+        {
+            if (size() <= ZES_gv_STATEMENT_CACHE)
+            {
+                return false;
+            }
+            ZES_closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    private ZES_SqlSession() {}
+
+    public static ZES_SqlSession ZES_current()
+    {
+        return ZES_gv_current.get();
+    }
+
+    // 저장 한 건(또는 batch 하나)을 시작할 때 호출. 오래 잡은 connection은 여기서만 바꾼다 (트랜잭션 중간에는 바꾸지 않음)
+    public Connection ZES_begin() throws SQLException
+    {
+        if (connection != null && System.nanoTime() - pinnedAt > ZES_gv_PIN_NANOS)
+        {
+            ZES_release();
+        }
+        return ZES_connection();
+    }
+
+    public PreparedStatement ZES_prepare(String sql) throws SQLException
+    {
+        PreparedStatement ZES_lv_statement = statements.get(sql);
+        if (ZES_lv_statement == null)
+        {
+            ZES_lv_statement = ZES_connection().prepareStatement(sql);
+            statements.put(sql, ZES_lv_statement);
+        }
+        return ZES_lv_statement;
+    }
+
+    // SQL 오류 뒤에 호출. connection 상태를 알 수 없으므로 statement와 함께 닫고 pool에 돌려준다
+    public void ZES_release()
+    {
+        for (PreparedStatement ZES_lv_statement : statements.values())
+        {
+            ZES_closeQuietly(ZES_lv_statement);
+        }
+        statements.clear();
+        if (connection != null)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (SQLException e)
+            {
+                ZES_gv_logger.warning("Failed to release pinned connection: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    private Connection ZES_connection() throws SQLException
+    {
+        if (connection == null)
+        {
+            connection = ZES_MysqlConfig.getConnection();
+            pinnedAt = System.nanoTime();
+        }
+        return connection;
+    }
+
+    private static void ZES_closeQuietly(PreparedStatement statement)
+    {
+        try
+        {
+            statement.close();
+        }
+        catch (SQLException e)
+        {
+            // connection을 닫을 때 같이 정리된다
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.zes.device;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getInt;
+
+// 각 구성요소의 카운터를 주기적으로 로그에 남긴다.
+public class ZES_StatsReporter implements AutoCloseable
+{
+    private final Map<String, Supplier<String>> sources = new ConcurrentSkipListMap<>();
+    private final int intervalSeconds;
+    private ScheduledExecutorService scheduler;
+
+    private ZES_StatsReporter(int intervalSeconds)
+    {
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public static ZES_StatsReporter ZES_fromEnvironment()
+    {
+        return new ZES_StatsReporter(ZES_getInt("zes.stats.interval.seconds", "ZES_STATS_INTERVAL_SECONDS", 60));
+    }
+
+    public void ZES_register(String name, Supplier<String> source)
+    {
+        sources.put(name, source);
+    }
+
+    public void ZES_start()
+    {
+        if (intervalSeconds <= 0)
+        {
+            ZES_gv_logger.info("Stats reporting disabled.");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ZES-Stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::ZES_report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void ZES_report()
+    {
+        for (Map.Entry<String, Supplier<String>> ZES_lv_entry : sources.entrySet())
+        {
+            try
+            {
+                ZES_gv_logger.info("[stats] " + ZES_lv_entry.getKey() + ": " + ZES_lv_entry.getValue().get());
+            }
+            catch (RuntimeException e)
+            {
+                ZES_gv_logger.warning("Failed to collect stats for " + ZES_lv_entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+        }
+    }
+}
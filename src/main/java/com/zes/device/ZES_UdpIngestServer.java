@@ -0,0 +1,163 @@
+package com.zes.device;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.ZES_FrameDispatcher.ZES_gv_FRAME_SIZE;
+
+// datagram 하나에 프레임 하나. 연결 없이 같은 checksum 검증 후 타입별 큐로 보낸다.
+public class ZES_UdpIngestServer implements Runnable, AutoCloseable
+{
+    private static final long ZES_gv_SELECT_TIMEOUT_MILLIS = 500;
+
+    private final ZES_Pipeline pipeline;
+    private final int port;
+    private final int receiveBufferSize;
+    // 512바이트보다 긴 datagram을 구분하기 위해 1바이트 여유
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(ZES_gv_FRAME_SIZE + 1);
+    private final byte[] frame = new byte[ZES_gv_FRAME_SIZE];
+    private final ZES_FrameHeader header = new ZES_FrameHeader();
+    private volatile boolean running;
+    private DatagramChannel channel;
+    private Selector selector;
+    // 통계 스레드가 읽으므로 AtomicLong. 쓰는 쪽은 수신 스레드 하나다
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+    private final AtomicLong wrongSizeDatagrams = new AtomicLong();
+
+    public ZES_UdpIngestServer(ZES_Pipeline pipeline, int port, int receiveBufferSize)
+    {
+        this.pipeline = pipeline;
+        this.port = port;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public void ZES_start() throws IOException
+    {
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        running = true;
+        Thread thread = new Thread(this, "ZES-UDP-Ingest");
+        thread.start();
+        ZES_gv_logger.info("UDP ingest server started on port " + port);
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (running)
+            {
+                if (selector.select(ZES_gv_SELECT_TIMEOUT_MILLIS) == 0)
+                {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                ZES_drain();
+            }
+        }
+        catch (IOException e)
+        {
+            if (running)
+            {
+                ZES_gv_logger.severe("IOException in UDP ingest server: " + e.getMessage());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            ZES_gv_logger.info("UDP ingest server interrupted, shutting down");
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            ZES_gv_logger.info("UDP ingest server stopped. " + ZES_stats());
+            ZES_closeChannel();
+        }
+    }
+
+    // 소켓 버퍼에 쌓인 datagram을 한 번에 모두 읽는다
+    private void ZES_drain() throws IOException, InterruptedException
+    {
+        SocketAddress ZES_lv_source;
+        while ((ZES_lv_source = channel.receive(receiveBuffer)) != null)
+        {
+            receiveBuffer.flip();
+            if (receiveBuffer.remaining() != ZES_gv_FRAME_SIZE)
+            {
+                droppedDatagrams.incrementAndGet();
+                ZES_logWrongSize(wrongSizeDatagrams.incrementAndGet(), receiveBuffer.remaining(), ZES_lv_source);
+                receiveBuffer.clear();
+                continue;
+            }
+            receiveBuffer.get(frame);
+            receiveBuffer.clear();
+            header.ZES_parse(frame, 0);
+            if (pipeline.ZES_submit(frame, header, Instant.now().toEpochMilli()))
+            {
+                receivedFrames.incrementAndGet();
+            }
+            else
+            {
+                droppedDatagrams.incrementAndGet();
+            }
+        }
+    }
+
+    private static void ZES_logWrongSize(long count, int size, SocketAddress source)
+    {
+        // 잘못된 송신 장비가 로그를 채우지 않게 1, 2, 4, 8, ... 번째만 남긴다. 전체 건수는 통계 로그의 wrongSize
+        if (Long.bitCount(count) == 1)
+        {
+            ZES_gv_logger.warning("Dropped datagram of " + size + " bytes from " + source + ", " + count + " wrong-size datagrams so far");
+        }
+    }
+
+    // 512바이트가 아닌 datagram(wrongSize)도 dropped에 포함된다
+    public String ZES_stats()
+    {
+        return "received=" + receivedFrames.get() + " dropped=" + droppedDatagrams.get() + " wrongSize=" + wrongSizeDatagrams.get();
+    }
+
+    @Override
+    public void close()
+    {
+        running = false;
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
+    }
+
+    private void ZES_closeChannel()
+    {
+        try
+        {
+            if (selector != null)
+            {
+                selector.close();
+            }
+            if (channel != null)
+            {
+                channel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            ZES_gv_logger.warning("Error closing UDP channel: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zes.device.config;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+public final class ZES_EnvConfig
+{
+    private static final Logger ZES_gv_logger = Logger.getGlobal();
+
+    private ZES_EnvConfig() {}
+
+    // 시스템 프로퍼티 우선, 없으면 환경변수
+    public static String ZES_getValue(String propertyKey, String envKey)
+    {
+        String propertyValue = System.getProperty(propertyKey);
+        if (propertyValue != null && !propertyValue.isBlank())
+        {
+            return propertyValue;
+        }
+        String envValue = System.getenv(envKey);
+        if (envValue != null && !envValue.isBlank())
+        {
+            return envValue;
+        }
+        return null;
+    }
+
+    public static String ZES_getString(String propertyKey, String envKey, String defaultValue)
+    {
+        String value = ZES_getValue(propertyKey, envKey);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    public static int ZES_getInt(String propertyKey, String envKey, int defaultValue)
+    {
+        String value = ZES_getValue(propertyKey, envKey);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            ZES_gv_logger.warning("Invalid " + propertyKey + " value: " + value + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long ZES_getLong(String propertyKey, String envKey, long defaultValue)
+    {
+        String value = ZES_getValue(propertyKey, envKey);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            ZES_gv_logger.warning("Invalid " + propertyKey + " value: " + value + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean ZES_getBoolean(String propertyKey, String envKey, boolean defaultValue)
+    {
+        String value = ZES_getValue(propertyKey, envKey);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim().toLowerCase(Locale.ROOT));
+    }
+}
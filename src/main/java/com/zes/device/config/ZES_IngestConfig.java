@@ -0,0 +1,133 @@
+package com.zes.device.config;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import static com.zes.device.config.ZES_EnvConfig.*;
+
+public class ZES_IngestConfig
+{
+    private static final Logger ZES_gv_logger = Logger.getGlobal();
+
+    public enum ZES_Mode
+    {
+        BLOCKING,
+        VIRTUAL,
+        NIO
+    }
+
+    private final ZES_Mode mode;
+    private final int nioThreads;
+    private final int acceptors;
+    private final int readTimeoutMillis;
+    private final boolean streaming;
+    private final int idleTimeoutMillis;
+    private final boolean resync;
+    private final boolean udpEnabled;
+    private final int udpPort;
+    private final int udpReceiveBufferSize;
+
+    private ZES_IngestConfig(ZES_Mode mode, int nioThreads, int acceptors, int readTimeoutMillis, boolean streaming, int idleTimeoutMillis, boolean resync,
+                             boolean udpEnabled, int udpPort, int udpReceiveBufferSize)
+    {
+        this.mode = mode;
+        this.nioThreads = nioThreads;
+        this.acceptors = acceptors;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.streaming = streaming;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.resync = resync;
+        this.udpEnabled = udpEnabled;
+        this.udpPort = udpPort;
+        this.udpReceiveBufferSize = udpReceiveBufferSize;
+    }
+
+    public static ZES_IngestConfig ZES_fromEnvironment()
+    {
+        String modeValue = ZES_getString("zes.ingest.mode", "ZES_INGEST_MODE", "blocking");
+        ZES_Mode mode;
+        try
+        {
+            mode = ZES_Mode.valueOf(modeValue.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            ZES_gv_logger.warning("Invalid ingest mode: " + modeValue + ", using blocking.");
+            mode = ZES_Mode.BLOCKING;
+        }
+        int nioThreads = Math.max(1, ZES_getInt("zes.ingest.nio.threads", "ZES_INGEST_NIO_THREADS", Runtime.getRuntime().availableProcessors()));
+        int acceptors = Math.max(1, ZES_getInt("zes.ingest.acceptors", "ZES_INGEST_ACCEPTORS", Runtime.getRuntime().availableProcessors()));
+        int readTimeoutMillis = ZES_getInt("zes.ingest.read.timeout.ms", "ZES_INGEST_READ_TIMEOUT_MS", 2000);
+        boolean streaming = ZES_getBoolean("zes.ingest.streaming", "ZES_INGEST_STREAMING", false);
+        int idleTimeoutMillis = ZES_getInt("zes.ingest.idle.timeout.ms", "ZES_INGEST_IDLE_TIMEOUT_MS", 60000);
+        if (streaming && mode == ZES_Mode.BLOCKING)
+        {
+            ZES_gv_logger.warning("Streaming connections in blocking mode hold the producer thread until the device disconnects. Use virtual or nio mode.");
+        }
+        boolean resync = ZES_getBoolean("zes.ingest.resync", "ZES_INGEST_RESYNC", true);
+        boolean udpEnabled = ZES_getBoolean("zes.ingest.udp.enabled", "ZES_INGEST_UDP_ENABLED", false);
+        // 0이면 TCP 수신 포트와 같은 번호 사용
+        int udpPort = ZES_getInt("zes.ingest.udp.port", "ZES_INGEST_UDP_PORT", 0);
+        int udpReceiveBufferSize = ZES_getInt("zes.ingest.udp.receive.buffer", "ZES_INGEST_UDP_RECEIVE_BUFFER", 4 * 1024 * 1024);
+        return new ZES_IngestConfig(mode, nioThreads, acceptors, readTimeoutMillis, streaming, idleTimeoutMillis, resync,
+                udpEnabled, udpPort, udpReceiveBufferSize);
+    }
+
+    public ZES_Mode ZES_getMode()
+    {
+        return mode;
+    }
+
+    public int ZES_getNioThreads()
+    {
+        return nioThreads;
+    }
+
+    // blocking/virtual 모드의 accept 스레드 수
+    public int ZES_getAcceptors()
+    {
+        return acceptors;
+    }
+
+    public int ZES_getReadTimeoutMillis()
+    {
+        return readTimeoutMillis;
+    }
+
+    // 0이면 연결을 유지하며 프레임 수 제한 없이 받는다 (streaming)
+    public int ZES_getFramesPerConnection()
+    {
+        return streaming ? 0 : 5;
+    }
+
+    public boolean ZES_isStreaming()
+    {
+        return streaming;
+    }
+
+    // streaming 모드에서 프레임 사이에 허용하는 최대 대기 시간
+    public int ZES_getIdleTimeoutMillis()
+    {
+        return streaming ? idleTimeoutMillis : readTimeoutMillis;
+    }
+
+    public boolean ZES_isResync()
+    {
+        return resync;
+    }
+
+    public boolean ZES_isUdpEnabled()
+    {
+        return udpEnabled;
+    }
+
+    public int ZES_getUdpPort(int tcpPort)
+    {
+        return udpPort > 0 ? udpPort : tcpPort;
+    }
+
+    public int ZES_getUdpReceiveBufferSize()
+    {
+        return udpReceiveBufferSize;
+    }
+}
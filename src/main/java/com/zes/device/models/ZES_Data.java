@@ -1,21 +1,32 @@
 package com.zes.device.models;
 
-public class ZES_Data
+// 프레임 안 필드 하나의 위치/크기/형식. 타입별 static 배열로 공유되므로 값은 들고 있지 않는다 (값은 ZES_FrameValues)
+public final class ZES_Data
 {
+    public static final int ZES_gv_KIND_LONG = 0;
+    public static final int ZES_gv_KIND_DOUBLE = 1;
+    public static final int ZES_gv_KIND_TIME = 2;
+    // 1바이트 on/off 값 (0이 아니면 1). 프레임마다 bitmask로 모아서 보관한다
+    public static final int ZES_gv_KIND_FLAG = 3;
+
     public final String ZES_gv_key;
     public final int ZES_gv_offset;
-    public int ZES_gv_size = 0;
-    public int ZES_gv_delimit_size;
-    public String ZES_gv_dataType = "long";
-    public Object ZES_gv_value;
-    public Object ZES_gv_prevValue;
-    public boolean ZES_gv_isNewValue = true;
+    public final int ZES_gv_size;
+    public final int ZES_gv_delimit_size;
+    public final String ZES_gv_dataType;
+    public final int ZES_gv_kind;
+    // 필드가 걸쳐 있는 8바이트 word (bit w = 프레임 byte w*8 ~ w*8+7)
+    public final long ZES_gv_wordMask;
 
     public ZES_Data(String key, int offset, int size)
     {
         this.ZES_gv_key = key;
         this.ZES_gv_offset = offset;
         this.ZES_gv_size = size;
+        this.ZES_gv_delimit_size = 0;
+        this.ZES_gv_dataType = "long";
+        this.ZES_gv_kind = ZES_gv_KIND_LONG;
+        this.ZES_gv_wordMask = ZES_wordMask(offset, size);
     }
 
     public ZES_Data(String key, int offset, String dataType, int delimitSize)
@@ -24,21 +35,33 @@ public class ZES_Data
         this.ZES_gv_offset = offset;
         this.ZES_gv_dataType = dataType;
         this.ZES_gv_delimit_size = delimitSize;
+        this.ZES_gv_kind = ZES_kindOf(dataType);
+        this.ZES_gv_size = ZES_gv_kind == ZES_gv_KIND_FLAG ? 1 : 0;
+        this.ZES_gv_wordMask = ZES_wordMask(offset, ZES_gv_kind == ZES_gv_KIND_TIME ? 6 : ZES_gv_kind == ZES_gv_KIND_FLAG ? 1 : 4);
     }
 
-    public void setValue(Object value)
-    {
-        this.ZES_gv_value = value;
-    }
-
-    public void setPrevValue(Object value)
+    private static long ZES_wordMask(int offset, int length)
     {
-        this.ZES_gv_prevValue = value;
-        this.ZES_gv_isNewValue = !ZES_gv_value.equals(ZES_gv_prevValue);
+        long ZES_lv_mask = 0;
+        for (int w = offset >>> 3; w <= (offset + length - 1) >>> 3 && w < 64; w++)
+        {
+            ZES_lv_mask |= 1L << w;
+        }
+        return ZES_lv_mask;
     }
 
-    public boolean isNewValue()
+    private static int ZES_kindOf(String dataType)
     {
-        return ZES_gv_isNewValue;
+        switch (dataType)
+        {
+            case "double":
+                return ZES_gv_KIND_DOUBLE;
+            case "time":
+                return ZES_gv_KIND_TIME;
+            case "flag":
+                return ZES_gv_KIND_FLAG;
+            default:
+                return ZES_gv_KIND_LONG;
+        }
     }
 }
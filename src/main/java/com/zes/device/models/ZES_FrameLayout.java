@@ -0,0 +1,409 @@
+package com.zes.device.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getValue;
+
+// 프레임 레이아웃 (info type별 필드 목록).
+// layouts/type<N>.layout 파일에서 읽고, 시작 시 형식/크기별 그룹으로 묶어 둔다. decode는 그룹마다 offset 배열을 순서대로 읽기만 한다.
+// flag 필드는 slot 대신 프레임별 bitmask에 8개씩 모아서 decode 한다.
+public final class ZES_FrameLayout
+{
+    private static final String ZES_gv_RESOURCE_DIR = "/layouts/";
+    private static final int ZES_gv_DATA_END = 510;
+    private static final Map<String, ZES_FrameLayout> ZES_gv_loaded = new ConcurrentHashMap<>();
+
+    private static final VarHandle ZES_gv_SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ZES_gv_INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ZES_gv_LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final long ZES_gv_LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ZES_gv_HIGHS = 0x8080808080808080L;
+    // byte k(0 = 첫 바이트)의 최상위 bit를 결과 bit 56 + k 로 모은다
+    private static final long ZES_gv_GATHER = 0x8040201008040201L;
+
+    private static final int ZES_gv_GROUP_U8 = 0;
+    private static final int ZES_gv_GROUP_U16 = 1;
+    private static final int ZES_gv_GROUP_U32 = 2;
+    private static final int ZES_gv_GROUP_WIDE = 3;
+    private static final int ZES_gv_GROUP_DOUBLE = 4;
+    private static final int ZES_gv_GROUP_TIME = 5;
+    private static final int ZES_gv_GROUP_COUNT = 6;
+
+    public final String ZES_gv_name;
+    private final ZES_Data[] fields;
+    private final ZES_FieldGroup[] groups;
+    // flag 필드 i -> bitmask 위치 (flag가 아니면 -1), bitmask 위치 -> 필드 번호
+    private final int[] flagBit;
+    private final int[] flagField;
+    // offset이 연속된 flag 필드 묶음: 8바이트씩 읽어서 8 bit씩 만든다
+    private final int[] flagRunOffset;
+    private final int[] flagRunBit;
+    private final int[] flagRunLength;
+
+    private ZES_FrameLayout(String name, ZES_Data[] fields)
+    {
+        this.ZES_gv_name = name;
+        this.fields = fields;
+        List<List<Integer>> ZES_lv_members = new ArrayList<>();
+        for (int g = 0; g < ZES_gv_GROUP_COUNT; g++)
+        {
+            ZES_lv_members.add(new ArrayList<>());
+        }
+        this.flagBit = new int[fields.length];
+        List<Integer> ZES_lv_flagFields = new ArrayList<>();
+        List<int[]> ZES_lv_runs = new ArrayList<>();
+        for (int i = 0; i < fields.length; i++)
+        {
+            flagBit[i] = -1;
+            if (fields[i].ZES_gv_kind != ZES_Data.ZES_gv_KIND_FLAG)
+            {
+                ZES_lv_members.get(ZES_groupOf(fields[i])).add(i);
+                continue;
+            }
+            int ZES_lv_bit = ZES_lv_flagFields.size();
+            flagBit[i] = ZES_lv_bit;
+            ZES_lv_flagFields.add(i);
+            int[] ZES_lv_last = ZES_lv_runs.isEmpty() ? null : ZES_lv_runs.get(ZES_lv_runs.size() - 1);
+            if (ZES_lv_last != null && ZES_lv_last[0] + ZES_lv_last[2] == fields[i].ZES_gv_offset && ZES_lv_last[1] + ZES_lv_last[2] == ZES_lv_bit)
+            {
+                ZES_lv_last[2]++;
+            }
+            else
+            {
+                ZES_lv_runs.add(new int[]{fields[i].ZES_gv_offset, ZES_lv_bit, 1});
+            }
+        }
+        this.flagField = ZES_lv_flagFields.stream().mapToInt(Integer::intValue).toArray();
+        this.flagRunOffset = ZES_lv_runs.stream().mapToInt(run -> run[0]).toArray();
+        this.flagRunBit = ZES_lv_runs.stream().mapToInt(run -> run[1]).toArray();
+        this.flagRunLength = ZES_lv_runs.stream().mapToInt(run -> run[2]).toArray();
+        List<ZES_FieldGroup> ZES_lv_groups = new ArrayList<>();
+        for (int g = 0; g < ZES_gv_GROUP_COUNT; g++)
+        {
+            if (!ZES_lv_members.get(g).isEmpty())
+            {
+                ZES_lv_groups.add(new ZES_FieldGroup(g, fields, ZES_lv_members.get(g)));
+            }
+        }
+        this.groups = ZES_lv_groups.toArray(new ZES_FieldGroup[0]);
+    }
+
+    // zes.layout.type<N>.revision 이 있으면 type<N>-r<revision>.layout, 없으면 type<N>.layout.
+    // zes.layout.dir 에 같은 이름의 파일이 있으면 jar 안의 기본 파일 대신 사용한다.
+    public static ZES_FrameLayout ZES_forType(int infoType)
+    {
+        String ZES_lv_revision = ZES_getValue("zes.layout.type" + infoType + ".revision", "ZES_LAYOUT_TYPE" + infoType + "_REVISION");
+        String ZES_lv_name = "type" + infoType + (ZES_lv_revision == null ? "" : "-r" + ZES_lv_revision);
+        return ZES_gv_loaded.computeIfAbsent(ZES_lv_name, ZES_FrameLayout::ZES_load);
+    }
+
+    private static ZES_FrameLayout ZES_load(String name)
+    {
+        String ZES_lv_fileName = name + ".layout";
+        String ZES_lv_dir = ZES_getValue("zes.layout.dir", "ZES_LAYOUT_DIR");
+        try
+        {
+            if (ZES_lv_dir != null)
+            {
+                Path ZES_lv_path = Paths.get(ZES_lv_dir, ZES_lv_fileName);
+                if (Files.exists(ZES_lv_path))
+                {
+                    try (InputStream ZES_lv_in = Files.newInputStream(ZES_lv_path))
+                    {
+                        return ZES_parse(name, ZES_lv_path.toString(), ZES_lv_in);
+                    }
+                }
+            }
+            try (InputStream ZES_lv_in = ZES_FrameLayout.class.getResourceAsStream(ZES_gv_RESOURCE_DIR + ZES_lv_fileName))
+            {
+                if (ZES_lv_in == null)
+                {
+                    throw new IllegalStateException("Frame layout not found: " + ZES_lv_fileName);
+                }
+                return ZES_parse(name, "classpath:" + ZES_gv_RESOURCE_DIR + ZES_lv_fileName, ZES_lv_in);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read frame layout " + ZES_lv_fileName, e);
+        }
+    }
+
+    // 한 줄에 필드 하나: key,offset,size / key,offset,double|time,delimitSize / key,offset,flag. '#'은 주석
+    private static ZES_FrameLayout ZES_parse(String name, String source, InputStream in) throws IOException
+    {
+        List<ZES_Data> ZES_lv_fields = new ArrayList<>();
+        BufferedReader ZES_lv_reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String ZES_lv_line;
+        int ZES_lv_lineNo = 0;
+        while ((ZES_lv_line = ZES_lv_reader.readLine()) != null)
+        {
+            ZES_lv_lineNo++;
+            ZES_lv_line = ZES_lv_line.trim();
+            if (ZES_lv_line.isEmpty() || ZES_lv_line.startsWith("#"))
+            {
+                continue;
+            }
+            String[] ZES_lv_parts = ZES_lv_line.split("\\s*,\\s*");
+            try
+            {
+                ZES_Data ZES_lv_data;
+                if (ZES_lv_parts.length == 3 && !"flag".equals(ZES_lv_parts[2]))
+                {
+                    ZES_lv_data = new ZES_Data(ZES_lv_parts[0], Integer.parseInt(ZES_lv_parts[1]), Integer.parseInt(ZES_lv_parts[2]));
+                }
+                else if (ZES_lv_parts.length == 3 && "flag".equals(ZES_lv_parts[2]))
+                {
+                    ZES_lv_data = new ZES_Data(ZES_lv_parts[0], Integer.parseInt(ZES_lv_parts[1]), ZES_lv_parts[2], 0);
+                }
+                else if (ZES_lv_parts.length == 4 && ("double".equals(ZES_lv_parts[2]) || "time".equals(ZES_lv_parts[2])))
+                {
+                    ZES_lv_data = new ZES_Data(ZES_lv_parts[0], Integer.parseInt(ZES_lv_parts[1]), ZES_lv_parts[2], Integer.parseInt(ZES_lv_parts[3]));
+                }
+                else
+                {
+                    throw new IllegalArgumentException("expected key,offset,size or key,offset,double|time,delimitSize or key,offset,flag");
+                }
+                ZES_validate(ZES_lv_data);
+                ZES_lv_fields.add(ZES_lv_data);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException(source + ":" + ZES_lv_lineNo + ": " + e.getMessage(), e);
+            }
+        }
+        ZES_gv_logger.info("Frame layout " + name + " loaded from " + source + " (" + ZES_lv_fields.size() + " fields)");
+        return new ZES_FrameLayout(name, ZES_lv_fields.toArray(new ZES_Data[0]));
+    }
+
+    private static void ZES_validate(ZES_Data data)
+    {
+        int ZES_lv_length = ZES_length(data);
+        if (data.ZES_gv_kind == ZES_Data.ZES_gv_KIND_LONG && (data.ZES_gv_size < 1 || data.ZES_gv_size > 8))
+        {
+            throw new IllegalArgumentException("size must be 1..8: " + data.ZES_gv_key);
+        }
+        if (data.ZES_gv_kind == ZES_Data.ZES_gv_KIND_DOUBLE && (data.ZES_gv_delimit_size < 0 || data.ZES_gv_delimit_size > 4))
+        {
+            throw new IllegalArgumentException("delimitSize must be 0..4: " + data.ZES_gv_key);
+        }
+        if (data.ZES_gv_offset < 0 || data.ZES_gv_offset + ZES_lv_length > ZES_gv_DATA_END)
+        {
+            throw new IllegalArgumentException("field outside frame data area: " + data.ZES_gv_key);
+        }
+    }
+
+    private static int ZES_length(ZES_Data data)
+    {
+        switch (data.ZES_gv_kind)
+        {
+            case ZES_Data.ZES_gv_KIND_DOUBLE:
+                return 4;
+            case ZES_Data.ZES_gv_KIND_TIME:
+                return 6;
+            case ZES_Data.ZES_gv_KIND_FLAG:
+                return 1;
+            default:
+                return data.ZES_gv_size;
+        }
+    }
+
+    private static int ZES_groupOf(ZES_Data data)
+    {
+        switch (data.ZES_gv_kind)
+        {
+            case ZES_Data.ZES_gv_KIND_DOUBLE:
+                return ZES_gv_GROUP_DOUBLE;
+            case ZES_Data.ZES_gv_KIND_TIME:
+                return ZES_gv_GROUP_TIME;
+            default:
+                return data.ZES_gv_size == 1 ? ZES_gv_GROUP_U8
+                        : data.ZES_gv_size == 2 ? ZES_gv_GROUP_U16
+                        : data.ZES_gv_size == 4 ? ZES_gv_GROUP_U32
+                        : ZES_gv_GROUP_WIDE;
+        }
+    }
+
+    public int ZES_size()
+    {
+        return fields.length;
+    }
+
+    public ZES_Data ZES_field(int index)
+    {
+        return fields[index];
+    }
+
+    public int ZES_flagCount()
+    {
+        return flagField.length;
+    }
+
+    public int ZES_flagWordCount()
+    {
+        return (flagField.length + 63) >>> 6;
+    }
+
+    // flag 필드면 bitmask 위치, 아니면 -1
+    public int ZES_flagBit(int index)
+    {
+        return flagBit[index];
+    }
+
+    public int ZES_flagField(int bit)
+    {
+        return flagField[bit];
+    }
+
+    // flag 필드 전체를 bitmask로 (0이 아닌 바이트 = 1)
+    void ZES_decodeFlags(byte[] bytes, long[] flagWords)
+    {
+        for (int r = 0; r < flagRunOffset.length; r++)
+        {
+            int ZES_lv_offset = flagRunOffset[r];
+            int ZES_lv_bit = flagRunBit[r];
+            int ZES_lv_remaining = flagRunLength[r];
+            while (ZES_lv_remaining >= 8)
+            {
+                long ZES_lv_word = (long) ZES_gv_LONG_BE.get(bytes, ZES_lv_offset);
+                long ZES_lv_nonZero = (((ZES_lv_word & ZES_gv_LOW7) + ZES_gv_LOW7) | ZES_lv_word) & ZES_gv_HIGHS;
+                ZES_setBits(flagWords, ZES_lv_bit, ((ZES_lv_nonZero >>> 7) * ZES_gv_GATHER) >>> 56);
+                ZES_lv_offset += 8;
+                ZES_lv_bit += 8;
+                ZES_lv_remaining -= 8;
+            }
+            for (; ZES_lv_remaining > 0; ZES_lv_remaining--, ZES_lv_offset++, ZES_lv_bit++)
+            {
+                if (bytes[ZES_lv_offset] != 0)
+                {
+                    flagWords[ZES_lv_bit >>> 6] |= 1L << ZES_lv_bit;
+                }
+            }
+        }
+    }
+
+    // 8 bit 값을 bit 위치부터 기록 (word 경계를 넘을 수 있음)
+    private static void ZES_setBits(long[] words, int bit, long bits)
+    {
+        words[bit >>> 6] |= bits << bit;
+        int ZES_lv_shift = bit & 63;
+        if (ZES_lv_shift > 56)
+        {
+            words[(bit >>> 6) + 1] |= bits >>> (64 - ZES_lv_shift);
+        }
+    }
+
+    // changedWords에 걸친 필드만 decode (-1L이면 전체)
+    void ZES_decode(byte[] bytes, long changedWords, long[] longValues, double[] doubleValues)
+    {
+        for (ZES_FieldGroup ZES_lv_group : groups)
+        {
+            ZES_lv_group.ZES_decode(bytes, changedWords, longValues, doubleValues);
+        }
+    }
+
+    // 같은 형식/크기의 필드 묶음. 그룹 안에서는 형식 분기 없이 offset만 바꿔 가며 읽는다.
+    private static final class ZES_FieldGroup
+    {
+        private final int kind;
+        private final int[] index;
+        private final int[] offset;
+        private final int[] param;
+        private final long[] wordMask;
+
+        private ZES_FieldGroup(int kind, ZES_Data[] fields, List<Integer> members)
+        {
+            this.kind = kind;
+            int ZES_lv_count = members.size();
+            this.index = new int[ZES_lv_count];
+            this.offset = new int[ZES_lv_count];
+            this.param = new int[ZES_lv_count];
+            this.wordMask = new long[ZES_lv_count];
+            for (int j = 0; j < ZES_lv_count; j++)
+            {
+                ZES_Data ZES_lv_data = fields[members.get(j)];
+                index[j] = members.get(j);
+                offset[j] = ZES_lv_data.ZES_gv_offset;
+                param[j] = kind == ZES_gv_GROUP_DOUBLE ? ZES_lv_data.ZES_gv_delimit_size : ZES_lv_data.ZES_gv_size;
+                wordMask[j] = ZES_lv_data.ZES_gv_wordMask;
+            }
+        }
+
+        private void ZES_decode(byte[] bytes, long changedWords, long[] longValues, double[] doubleValues)
+        {
+            switch (kind)
+            {
+                case ZES_gv_GROUP_U8:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            longValues[index[j]] = bytes[offset[j]] & 0xFFL;
+                        }
+                    }
+                    break;
+                case ZES_gv_GROUP_U16:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            longValues[index[j]] = (short) ZES_gv_SHORT_BE.get(bytes, offset[j]) & 0xFFFFL;
+                        }
+                    }
+                    break;
+                case ZES_gv_GROUP_U32:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            longValues[index[j]] = (int) ZES_gv_INT_BE.get(bytes, offset[j]) & 0xFFFFFFFFL;
+                        }
+                    }
+                    break;
+                case ZES_gv_GROUP_WIDE:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            longValues[index[j]] = ZES_FrameValues.ZES_readUnsigned(bytes, offset[j], param[j]);
+                        }
+                    }
+                    break;
+                case ZES_gv_GROUP_DOUBLE:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            doubleValues[index[j]] = ZES_FrameValues.ZES_readFixedPoint(bytes, offset[j], param[j]);
+                        }
+                    }
+                    break;
+                case ZES_gv_GROUP_TIME:
+                    for (int j = 0; j < index.length; j++)
+                    {
+                        if ((wordMask[j] & changedWords) != 0)
+                        {
+                            longValues[index[j]] = ZES_FrameValues.ZES_readTime(bytes, offset[j]);
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+}
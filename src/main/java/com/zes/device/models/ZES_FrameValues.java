@@ -0,0 +1,400 @@
+package com.zes.device.models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// 프레임 하나의 decode 결과. ZES_FrameLayout 필드와 같은 순서의 primitive slot에 값을 담는다.
+// long/time은 long[], double은 double[]에 들어가며, 문자열은 SQL을 만들 때(ZES_appendValue)만 만든다.
+public final class ZES_FrameValues
+{
+    private static final VarHandle ZES_gv_SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ZES_gv_INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ZES_gv_LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int ZES_gv_WORDS = 64;
+    private static final double[] ZES_gv_POW10 = {1d, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10};
+
+    private final ZES_FrameLayout layout;
+    private final byte[] bytes;
+    // 직전 프레임과 비교해서 만든 값이면 true. 이때 newValueMask는 직전 프레임 대비 변경 여부
+    private final boolean delta;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    // flag 필드 값 (bit = ZES_FrameLayout.ZES_flagBit)
+    private final long[] flagWords;
+    // 이전 값과 다른 필드 (bit i = i번째 필드)
+    private final long[] newValueMask;
+
+    public ZES_FrameValues(ZES_FrameLayout layout, byte[] bytes)
+    {
+        this.layout = layout;
+        this.bytes = bytes;
+        this.delta = false;
+        this.longValues = new long[layout.ZES_size()];
+        this.doubleValues = new double[layout.ZES_size()];
+        this.flagWords = new long[layout.ZES_flagWordCount()];
+        this.newValueMask = new long[(layout.ZES_size() + 63) >>> 6];
+        ZES_markAllNew();
+        layout.ZES_decode(bytes, -1L, longValues, doubleValues);
+        layout.ZES_decodeFlags(bytes, flagWords);
+    }
+
+    // 같은 설비/타입의 직전 프레임과 비교해서, 바이트가 바뀐 word에 걸친 필드만 decode 한다.
+    // 나머지 필드는 직전 값을 그대로 쓰고, 값이 실제로 바뀐 필드만 new로 표시한다.
+    public ZES_FrameValues(ZES_FrameValues previous, byte[] bytes)
+    {
+        this.layout = previous.layout;
+        this.bytes = bytes;
+        this.delta = true;
+        this.newValueMask = new long[previous.newValueMask.length];
+        if (Arrays.equals(previous.bytes, 0, ZES_gv_WORDS << 3, bytes, 0, ZES_gv_WORDS << 3))
+        {
+            // 같은 프레임이면 slot 배열도 공유 (읽기 전용)
+            this.longValues = previous.longValues;
+            this.doubleValues = previous.doubleValues;
+            this.flagWords = previous.flagWords;
+            return;
+        }
+        this.longValues = previous.longValues.clone();
+        this.doubleValues = previous.doubleValues.clone();
+        this.flagWords = new long[previous.flagWords.length];
+        long ZES_lv_changedWords = ZES_changedWords(previous.bytes, bytes);
+        layout.ZES_decode(bytes, ZES_lv_changedWords, longValues, doubleValues);
+        layout.ZES_decodeFlags(bytes, flagWords);
+        for (int i = 0; i < layout.ZES_size(); i++)
+        {
+            ZES_Data ZES_lv_data = layout.ZES_field(i);
+            if ((ZES_lv_data.ZES_gv_wordMask & ZES_lv_changedWords) == 0 || ZES_lv_data.ZES_gv_kind == ZES_Data.ZES_gv_KIND_FLAG)
+            {
+                continue;
+            }
+            boolean ZES_lv_isNew = ZES_lv_data.ZES_gv_kind == ZES_Data.ZES_gv_KIND_DOUBLE
+                    ? Double.doubleToLongBits(doubleValues[i]) != Double.doubleToLongBits(previous.doubleValues[i])
+                    : longValues[i] != previous.longValues[i];
+            ZES_setNewValue(i, ZES_lv_isNew);
+        }
+        // flag는 XOR로 바뀐 bit만 골라낸다
+        for (int w = 0; w < flagWords.length; w++)
+        {
+            long ZES_lv_diff = flagWords[w] ^ previous.flagWords[w];
+            while (ZES_lv_diff != 0)
+            {
+                int ZES_lv_bit = (w << 6) + Long.numberOfTrailingZeros(ZES_lv_diff);
+                ZES_setNewValue(layout.ZES_flagField(ZES_lv_bit), true);
+                ZES_lv_diff &= ZES_lv_diff - 1;
+            }
+        }
+    }
+
+    // DB에 저장된 값 (ZES_LastStateCache). 원본 바이트가 없으므로 delta decode의 기준으로는 쓰지 않는다
+    ZES_FrameValues(ZES_FrameLayout layout, long[] longValues, double[] doubleValues, long[] flagWords)
+    {
+        this.layout = layout;
+        this.bytes = null;
+        this.delta = false;
+        this.longValues = longValues;
+        this.doubleValues = doubleValues;
+        this.flagWords = flagWords;
+        this.newValueMask = new long[(layout.ZES_size() + 63) >>> 6];
+        ZES_markAllNew();
+    }
+
+    // 마지막으로 저장된 값(stored)과 필드별로 비교해서 다른 필드만 new로 표시한다
+    public boolean ZES_compareWith(ZES_FrameValues stored)
+    {
+        Arrays.fill(newValueMask, 0L);
+        if (stored.longValues != longValues || stored.doubleValues != doubleValues)
+        {
+            for (int i = 0; i < layout.ZES_size(); i++)
+            {
+                switch (layout.ZES_field(i).ZES_gv_kind)
+                {
+                    case ZES_Data.ZES_gv_KIND_FLAG:
+                        break;
+                    case ZES_Data.ZES_gv_KIND_DOUBLE:
+                        if (Double.doubleToLongBits(doubleValues[i]) != Double.doubleToLongBits(stored.doubleValues[i]))
+                        {
+                            ZES_setNewValue(i, true);
+                        }
+                        break;
+                    default:
+                        if (longValues[i] != stored.longValues[i])
+                        {
+                            ZES_setNewValue(i, true);
+                        }
+                        break;
+                }
+            }
+        }
+        for (int w = 0; w < flagWords.length; w++)
+        {
+            long ZES_lv_diff = flagWords[w] ^ stored.flagWords[w];
+            while (ZES_lv_diff != 0)
+            {
+                ZES_setNewValue(layout.ZES_flagField((w << 6) + Long.numberOfTrailingZeros(ZES_lv_diff)), true);
+                ZES_lv_diff &= ZES_lv_diff - 1;
+            }
+        }
+        return ZES_hasAnyNewValue();
+    }
+
+    // 두 512바이트 프레임에서 내용이 다른 8바이트 word (bit w = byte w*8 ~ w*8+7)
+    public static long ZES_changedWords(byte[] previous, byte[] current)
+    {
+        long ZES_lv_mask = 0;
+        for (int w = 0; w < ZES_gv_WORDS; w++)
+        {
+            int ZES_lv_offset = w << 3;
+            if ((long) ZES_gv_LONG_BE.get(previous, ZES_lv_offset) != (long) ZES_gv_LONG_BE.get(current, ZES_lv_offset))
+            {
+                ZES_lv_mask |= 1L << w;
+            }
+        }
+        return ZES_lv_mask;
+    }
+
+    // size바이트 big-endian unsigned 정수
+    public static long ZES_readUnsigned(byte[] bytes, int offset, int size)
+    {
+        switch (size)
+        {
+            case 1:
+                return bytes[offset] & 0xFFL;
+            case 2:
+                return (short) ZES_gv_SHORT_BE.get(bytes, offset) & 0xFFFFL;
+            case 4:
+                return (int) ZES_gv_INT_BE.get(bytes, offset) & 0xFFFFFFFFL;
+            default:
+                long ZES_lv_value = 0;
+                for (int i = 0; i < size; i++)
+                {
+                    ZES_lv_value = (ZES_lv_value << 8) | (bytes[offset + i] & 0xFF);
+                }
+                return ZES_lv_value;
+        }
+    }
+
+    // 4바이트 = 정수부(4 - delimitSize) + 소수부(delimitSize).
+    // 기존 Double.parseDouble(정수부 + "." + 소수부)와 같은 값: 소수부를 자릿수 그대로 붙인 10진수를 한 번의 나눗셈으로 만든다.
+    // 분자/분모 모두 2^53 미만이라 double로 정확히 표현되고, IEEE 나눗셈은 parseDouble과 같은 방식으로 반올림된다.
+    public static double ZES_readFixedPoint(byte[] bytes, int offset, int delimitSize)
+    {
+        int ZES_lv_intSize = 4 - delimitSize;
+        long ZES_lv_intValue = ZES_readUnsigned(bytes, offset, ZES_lv_intSize);
+        if (delimitSize == 0)
+        {
+            return (double) ZES_lv_intValue / 100;
+        }
+        long ZES_lv_fractionValue = ZES_readUnsigned(bytes, offset + ZES_lv_intSize, delimitSize);
+        int ZES_lv_digits = ZES_digits(ZES_lv_fractionValue);
+        double ZES_lv_scale = ZES_gv_POW10[ZES_lv_digits];
+        return (ZES_lv_intValue * (long) ZES_lv_scale + ZES_lv_fractionValue) / ZES_lv_scale;
+    }
+
+    // 시/분/초 각 2바이트 -> (시 << 32) | (분 << 16) | 초
+    public static long ZES_readTime(byte[] bytes, int offset)
+    {
+        long ZES_lv_hour = ZES_readUnsigned(bytes, offset, 2);
+        long ZES_lv_min = ZES_readUnsigned(bytes, offset + 2, 2);
+        long ZES_lv_sec = ZES_readUnsigned(bytes, offset + 4, 2);
+        return (ZES_lv_hour << 32) | (ZES_lv_min << 16) | ZES_lv_sec;
+    }
+
+    // "HH:mm:ss" -> ZES_readTime 형식. 형식이 다르면 -1
+    public static long ZES_parseTime(String time)
+    {
+        if (time == null)
+        {
+            return -1;
+        }
+        long[] ZES_lv_parts = new long[3];
+        int ZES_lv_part = 0;
+        boolean ZES_lv_hasDigit = false;
+        for (int i = 0; i < time.length(); i++)
+        {
+            char ZES_lv_c = time.charAt(i);
+            if (ZES_lv_c == ':' && ZES_lv_hasDigit && ZES_lv_part < 2)
+            {
+                ZES_lv_part++;
+                ZES_lv_hasDigit = false;
+            }
+            else if (ZES_lv_c >= '0' && ZES_lv_c <= '9' && ZES_lv_parts[ZES_lv_part] < 0xFFFF)
+            {
+                ZES_lv_parts[ZES_lv_part] = ZES_lv_parts[ZES_lv_part] * 10 + (ZES_lv_c - '0');
+                ZES_lv_hasDigit = true;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+        if (ZES_lv_part != 2 || !ZES_lv_hasDigit)
+        {
+            return -1;
+        }
+        return (ZES_lv_parts[0] << 32) | (ZES_lv_parts[1] << 16) | ZES_lv_parts[2];
+    }
+
+    // 기존 String.format("%02d") 세 개를 ":"로 이은 것과 같은 문자열
+    public static StringBuilder ZES_appendTime(StringBuilder builder, long time)
+    {
+        ZES_appendTwoDigits(builder, (time >>> 32) & 0xFFFF).append(':');
+        ZES_appendTwoDigits(builder, (time >>> 16) & 0xFFFF).append(':');
+        return ZES_appendTwoDigits(builder, time & 0xFFFF);
+    }
+
+    private static StringBuilder ZES_appendTwoDigits(StringBuilder builder, long value)
+    {
+        if (value < 10)
+        {
+            builder.append('0');
+        }
+        return builder.append(value);
+    }
+
+    private static int ZES_digits(long value)
+    {
+        int ZES_lv_digits = 1;
+        while (value >= 10)
+        {
+            value /= 10;
+            ZES_lv_digits++;
+        }
+        return ZES_lv_digits;
+    }
+
+    public int ZES_size()
+    {
+        return layout.ZES_size();
+    }
+
+    public boolean ZES_isDelta()
+    {
+        return delta;
+    }
+
+    // 직전 프레임과 비교했고 바뀐 필드가 없음
+    public boolean ZES_isUnchanged()
+    {
+        return delta && !ZES_hasAnyNewValue();
+    }
+
+    public ZES_FrameLayout ZES_layout()
+    {
+        return layout;
+    }
+
+    public ZES_Data ZES_field(int index)
+    {
+        return layout.ZES_field(index);
+    }
+
+    public long ZES_getLong(int index)
+    {
+        int ZES_lv_bit = layout.ZES_flagBit(index);
+        return ZES_lv_bit < 0 ? longValues[index] : (flagWords[ZES_lv_bit >>> 6] >>> ZES_lv_bit) & 1L;
+    }
+
+    public int ZES_flagWordCount()
+    {
+        return flagWords.length;
+    }
+
+    public long ZES_getFlagWord(int word)
+    {
+        return flagWords[word];
+    }
+
+    public double ZES_getDouble(int index)
+    {
+        return doubleValues[index];
+    }
+
+    public long ZES_getTime(int index)
+    {
+        return longValues[index];
+    }
+
+    public void ZES_setNewValue(int index, boolean isNew)
+    {
+        long ZES_lv_bit = 1L << index;
+        if (isNew)
+        {
+            newValueMask[index >>> 6] |= ZES_lv_bit;
+        }
+        else
+        {
+            newValueMask[index >>> 6] &= ~ZES_lv_bit;
+        }
+    }
+
+    public boolean ZES_isNewValue(int index)
+    {
+        return (newValueMask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // 바뀐 필드 64개씩 (bit i = word*64+i번째 필드)
+    public long ZES_getNewValueWord(int word)
+    {
+        return newValueMask[word];
+    }
+
+    public int ZES_newValueWordCount()
+    {
+        return newValueMask.length;
+    }
+
+    public boolean ZES_hasAnyNewValue()
+    {
+        for (long ZES_lv_word : newValueMask)
+        {
+            if (ZES_lv_word != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 저장하지 않고 건너뛴 앞 프레임(older)에서 바뀐 필드도 new로 표시한다 (같은 레이아웃)
+    public void ZES_mergeNewValues(ZES_FrameValues older)
+    {
+        for (int i = 0; i < newValueMask.length; i++)
+        {
+            newValueMask[i] |= older.newValueMask[i];
+        }
+    }
+
+    public void ZES_markAllNew()
+    {
+        int ZES_lv_full = layout.ZES_size() >>> 6;
+        for (int i = 0; i < ZES_lv_full; i++)
+        {
+            newValueMask[i] = -1L;
+        }
+        int ZES_lv_rest = layout.ZES_size() & 63;
+        if (ZES_lv_rest != 0)
+        {
+            newValueMask[ZES_lv_full] = (1L << ZES_lv_rest) - 1;
+        }
+    }
+
+    public StringBuilder ZES_appendValue(StringBuilder builder, int index)
+    {
+        switch (layout.ZES_field(index).ZES_gv_kind)
+        {
+            case ZES_Data.ZES_gv_KIND_DOUBLE:
+                return builder.append(doubleValues[index]);
+            case ZES_Data.ZES_gv_KIND_TIME:
+                return ZES_appendTime(builder, longValues[index]);
+            default:
+                return builder.append(ZES_getLong(index));
+        }
+    }
+
+    public String ZES_getString(int index)
+    {
+        return ZES_appendValue(new StringBuilder(12), index).toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.zes.device.models;
+
+import java.nio.charset.StandardCharsets;
+
+// ICT 번호(ASCII 8바이트)를 long 하나로 표현. 설비마다 인스턴스 하나만 만들고(intern) 문자열도 그때 한 번만 만든다.
+public final class ZES_IctId
+{
+    private static final long ZES_gv_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final Object ZES_gv_lock = new Object();
+    // open addressing 테이블. 읽기는 lock 없이, 추가는 lock 안에서 빈 칸에 쓰고 volatile 필드에 다시 써서 공개한다 (커질 때만 새 배열).
+    private static volatile ZES_IctId[] ZES_gv_table = new ZES_IctId[256];
+    private static int ZES_gv_size = 0;
+
+    public final long ZES_gv_value;
+    private final String ZES_gv_string;
+
+    private ZES_IctId(long value)
+    {
+        this.ZES_gv_value = value;
+        byte[] ZES_lv_bytes = new byte[Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++)
+        {
+            ZES_lv_bytes[i] = (byte) (value >>> (56 - 8 * i));
+        }
+        this.ZES_gv_string = new String(ZES_lv_bytes, StandardCharsets.US_ASCII);
+    }
+
+    public static ZES_IctId ZES_of(long value)
+    {
+        ZES_IctId ZES_lv_found = ZES_find(ZES_gv_table, value);
+        if (ZES_lv_found != null)
+        {
+            return ZES_lv_found;
+        }
+        synchronized (ZES_gv_lock)
+        {
+            ZES_IctId[] ZES_lv_table = ZES_gv_table;
+            ZES_lv_found = ZES_find(ZES_lv_table, value);
+            if (ZES_lv_found != null)
+            {
+                return ZES_lv_found;
+            }
+            ZES_IctId ZES_lv_id = new ZES_IctId(value);
+            // 부하율 50% 이하 유지. 넘칠 때만 두 배 크기 배열로 옮긴다
+            if ((ZES_gv_size + 1) * 2 > ZES_lv_table.length)
+            {
+                ZES_IctId[] ZES_lv_next = new ZES_IctId[ZES_lv_table.length * 2];
+                for (ZES_IctId ZES_lv_existing : ZES_lv_table)
+                {
+                    if (ZES_lv_existing != null)
+                    {
+                        ZES_insert(ZES_lv_next, ZES_lv_existing);
+                    }
+                }
+                ZES_lv_table = ZES_lv_next;
+            }
+            // 칸을 채운 뒤의 volatile 쓰기로 lock 없이 읽는 쪽에도 보이게 한다. 그 전에 빈 칸을 본 쪽은 lock 안에서 다시 찾는다
+            ZES_insert(ZES_lv_table, ZES_lv_id);
+            ZES_gv_size++;
+            ZES_gv_table = ZES_lv_table;
+            return ZES_lv_id;
+        }
+    }
+
+    public static ZES_IctId ZES_of(String ictNumber)
+    {
+        return ZES_of(ZES_toLong(ictNumber));
+    }
+
+    // intern 하지 않고 long 값만 계산 (설정 파일, DB 목록 등). 8자가 아니면 자르거나 0으로 채우므로 목록은 ZES_isValid로 먼저 확인한다
+    public static long ZES_toLong(String ictNumber)
+    {
+        byte[] ZES_lv_bytes = ictNumber.getBytes(StandardCharsets.US_ASCII);
+        long ZES_lv_value = 0;
+        for (int i = 0; i < Long.BYTES; i++)
+        {
+            ZES_lv_value = (ZES_lv_value << 8) | (i < ZES_lv_bytes.length ? ZES_lv_bytes[i] & 0xFF : 0);
+        }
+        return ZES_lv_value;
+    }
+
+    // 프레임의 ICT 번호와 같은 형식(ASCII 8자)인지
+    public static boolean ZES_isValid(String ictNumber)
+    {
+        if (ictNumber.length() != Long.BYTES)
+        {
+            return false;
+        }
+        for (int i = 0; i < Long.BYTES; i++)
+        {
+            if (ictNumber.charAt(i) > 0x7F)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int ZES_hash(long value)
+    {
+        long ZES_lv_hash = value * ZES_gv_HASH_MULTIPLIER;
+        return (int) (ZES_lv_hash ^ (ZES_lv_hash >>> 32));
+    }
+
+    private static ZES_IctId ZES_find(ZES_IctId[] table, long value)
+    {
+        int ZES_lv_mask = table.length - 1;
+        for (int i = ZES_hash(value) & ZES_lv_mask; ; i = (i + 1) & ZES_lv_mask)
+        {
+            ZES_IctId ZES_lv_entry = table[i];
+            if (ZES_lv_entry == null || ZES_lv_entry.ZES_gv_value == value)
+            {
+                return ZES_lv_entry;
+            }
+        }
+    }
+
+    private static void ZES_insert(ZES_IctId[] table, ZES_IctId id)
+    {
+        int ZES_lv_mask = table.length - 1;
+        int i = ZES_hash(id.ZES_gv_value) & ZES_lv_mask;
+        while (table[i] != null)
+        {
+            i = (i + 1) & ZES_lv_mask;
+        }
+        table[i] = id;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof ZES_IctId && ((ZES_IctId) other).ZES_gv_value == ZES_gv_value;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ZES_hash(ZES_gv_value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return ZES_gv_string;
+    }
+}
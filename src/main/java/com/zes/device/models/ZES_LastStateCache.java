@@ -0,0 +1,215 @@
+package com.zes.device.models;
+
+import com.zes.device.ZES_SQLGenerator;
+import com.zes.device.config.ZES_MysqlConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+import static com.zes.device.config.ZES_EnvConfig.ZES_getBoolean;
+
+// 설비(ICT)별로 realtime 테이블(pms_real_data_<N>)에 마지막으로 저장한 값. 타입마다 하나.
+// 시작할 때 테이블을 한 번씩 읽어 채우고(warm), 저장에 성공할 때마다 갱신한다.
+// warm 이후에는 캐시에 없는 설비 = 테이블에 행이 없는 설비이므로 프레임마다 SELECT 하지 않는다.
+public final class ZES_LastStateCache
+{
+    public static final boolean ZES_gv_ENABLED = ZES_getBoolean("zes.state.cache", "ZES_STATE_CACHE", true);
+    private static final Map<Integer, ZES_LastStateCache> ZES_gv_caches = new ConcurrentSkipListMap<>();
+
+    private final String tableName;
+    private final ZES_FrameLayout layout;
+    private final ConcurrentHashMap<ZES_IctId, ZES_FrameValues> states = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // false면 캐시에 없는 설비가 DB에 있는지 알 수 없다 (SELECT 필요)
+    private volatile boolean warmed = false;
+
+    private ZES_LastStateCache(String tableName, ZES_FrameLayout layout)
+    {
+        this.tableName = tableName;
+        this.layout = layout;
+    }
+
+    public static ZES_LastStateCache ZES_forType(int infoType)
+    {
+        return ZES_gv_caches.computeIfAbsent(infoType, type -> new ZES_LastStateCache("pms_real_data_" + type, ZES_FrameLayout.ZES_forType(type)));
+    }
+
+    public static List<ZES_LastStateCache> ZES_getAll()
+    {
+        return new ArrayList<>(ZES_gv_caches.values());
+    }
+
+    // 테이블 전체를 한 번 읽어 채운다. 실패하면 warm 되지 않은 상태로 남고, 캐시에 없는 설비만 SELECT 한다.
+    public void ZES_warm()
+    {
+        if (!ZES_gv_ENABLED)
+        {
+            return;
+        }
+        long ZES_lv_started = System.currentTimeMillis();
+        try
+        (
+            Connection ZES_lv_conn = ZES_MysqlConfig.getConnection();
+            PreparedStatement ZES_lv_statement = ZES_lv_conn.prepareStatement("SELECT * FROM " + tableName);
+            ResultSet ZES_lv_resultSet = ZES_lv_statement.executeQuery();
+        )
+        {
+            ZES_RowReader ZES_lv_reader = new ZES_RowReader(layout, ZES_lv_resultSet);
+            int ZES_lv_rows = 0;
+            while (ZES_lv_resultSet.next())
+            {
+                String ZES_lv_ictNumber = ZES_lv_resultSet.getString("ict_number");
+                if (ZES_lv_ictNumber == null)
+                {
+                    continue;
+                }
+                // 저장 중에 먼저 들어온 값이 있으면 그쪽이 더 최신이다
+                states.putIfAbsent(ZES_IctId.ZES_of(ZES_lv_ictNumber.trim()), ZES_lv_reader.ZES_read(ZES_lv_resultSet));
+                ZES_lv_rows++;
+            }
+            warmed = true;
+            ZES_gv_logger.info("Last state cache " + tableName + " warmed: " + ZES_lv_rows + " rows in " + (System.currentTimeMillis() - ZES_lv_started) + " ms");
+        }
+        catch (SQLException | IllegalArgumentException e)
+        {
+            ZES_gv_logger.warning("Failed to warm last state cache " + tableName + ", falling back to SELECT per device: " + e.getMessage());
+        }
+    }
+
+    // 마지막 저장 값. null이면 저장한 적이 없거나(warm 이후) 알 수 없다(warm 전)
+    public ZES_FrameValues ZES_get(ZES_IctId ictId)
+    {
+        if (!ZES_gv_ENABLED)
+        {
+            return null;
+        }
+        ZES_FrameValues ZES_lv_values = states.get(ictId);
+        if (ZES_lv_values != null)
+        {
+            hits.increment();
+        }
+        else
+        {
+            misses.increment();
+        }
+        return ZES_lv_values;
+    }
+
+    public boolean ZES_isWarmed()
+    {
+        return ZES_gv_ENABLED && warmed;
+    }
+
+    // 저장에 성공한 값. 같은 설비는 같은 shard 스레드에서만 저장하므로 순서가 뒤바뀌지 않는다
+    public void ZES_put(ZES_IctId ictId, ZES_FrameValues values)
+    {
+        if (ZES_gv_ENABLED && values != null)
+        {
+            states.put(ictId, values);
+        }
+    }
+
+    public String ZES_stats()
+    {
+        return tableName + "=" + states.size() + (warmed ? "" : "(cold)") + " hit=" + hits.sum() + " miss=" + misses.sum();
+    }
+
+    // realtime 테이블 한 행 -> ZES_FrameValues. 컬럼 위치는 처음 한 번만 찾는다.
+    // flag는 zes.storage.flags에 따라 필드별 컬럼, flag_bits_<w>(packed), flag_bits(blob)에서 읽는다.
+    private static final class ZES_RowReader
+    {
+        private final ZES_FrameLayout layout;
+        private final int[] columns;
+        private final int[] flagColumns;
+        private final boolean packed = "packed".equals(ZES_SQLGenerator.ZES_gv_FLAG_STORAGE);
+
+        private ZES_RowReader(ZES_FrameLayout layout, ResultSet resultSet) throws SQLException
+        {
+            this.layout = layout;
+            boolean ZES_lv_flagColumns = ZES_SQLGenerator.ZES_isFlagColumns();
+            this.columns = new int[layout.ZES_size()];
+            for (int i = 0; i < layout.ZES_size(); i++)
+            {
+                boolean ZES_lv_flag = layout.ZES_flagBit(i) >= 0;
+                columns[i] = ZES_lv_flag && !ZES_lv_flagColumns ? -1 : resultSet.findColumn(layout.ZES_field(i).ZES_gv_key);
+            }
+            if (ZES_lv_flagColumns || layout.ZES_flagWordCount() == 0)
+            {
+                this.flagColumns = new int[0];
+            }
+            else if (packed)
+            {
+                this.flagColumns = new int[layout.ZES_flagWordCount()];
+                for (int w = 0; w < flagColumns.length; w++)
+                {
+                    flagColumns[w] = resultSet.findColumn("flag_bits_" + w);
+                }
+            }
+            else
+            {
+                this.flagColumns = new int[]{resultSet.findColumn("flag_bits")};
+            }
+        }
+
+        private ZES_FrameValues ZES_read(ResultSet resultSet) throws SQLException
+        {
+            long[] ZES_lv_longs = new long[layout.ZES_size()];
+            double[] ZES_lv_doubles = new double[layout.ZES_size()];
+            long[] ZES_lv_flags = new long[layout.ZES_flagWordCount()];
+            for (int i = 0; i < columns.length; i++)
+            {
+                if (columns[i] < 0)
+                {
+                    continue;
+                }
+                switch (layout.ZES_field(i).ZES_gv_kind)
+                {
+                    case ZES_Data.ZES_gv_KIND_DOUBLE:
+                        ZES_lv_doubles[i] = resultSet.getDouble(columns[i]);
+                        break;
+                    case ZES_Data.ZES_gv_KIND_TIME:
+                        ZES_lv_longs[i] = ZES_FrameValues.ZES_parseTime(resultSet.getString(columns[i]));
+                        break;
+                    case ZES_Data.ZES_gv_KIND_FLAG:
+                        int ZES_lv_bit = layout.ZES_flagBit(i);
+                        if (resultSet.getLong(columns[i]) != 0)
+                        {
+                            ZES_lv_flags[ZES_lv_bit >>> 6] |= 1L << ZES_lv_bit;
+                        }
+                        break;
+                    default:
+                        ZES_lv_longs[i] = resultSet.getLong(columns[i]);
+                        break;
+                }
+            }
+            if (packed)
+            {
+                for (int w = 0; w < flagColumns.length; w++)
+                {
+                    ZES_lv_flags[w] = resultSet.getLong(flagColumns[w]);
+                }
+            }
+            else if (flagColumns.length > 0)
+            {
+                // blob: byte b의 bit j -> flag bit b*8+j
+                byte[] ZES_lv_blob = resultSet.getBytes(flagColumns[0]);
+                int ZES_lv_bytes = ZES_lv_blob == null ? 0 : Math.min(ZES_lv_blob.length, ZES_lv_flags.length << 3);
+                for (int b = 0; b < ZES_lv_bytes; b++)
+                {
+                    ZES_lv_flags[b >>> 3] |= (ZES_lv_blob[b] & 0xFFL) << ((b & 7) << 3);
+                }
+            }
+            return new ZES_FrameValues(layout, ZES_lv_longs, ZES_lv_doubles, ZES_lv_flags);
+        }
+    }
+}
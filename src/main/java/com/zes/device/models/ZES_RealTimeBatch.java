@@ -0,0 +1,226 @@
+package com.zes.device.models;
+
+import com.zes.device.ZES_SQLGenerator;
+import com.zes.device.ZES_SpillLog;
+import com.zes.device.ZES_SqlSession;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.zes.device.ZES_DeviceApplication.ZES_gv_logger;
+
+// 같은 타입(테이블) 프레임 여러 개를 저장 스레드에 고정된 connection(ZES_SqlSession)에서 트랜잭션 하나로 저장한다.
+// INSERT/upsert 행과 UPDATE는 PreparedStatement batch로 보낸다 (rewriteBatchedStatements=true면 INSERT는 multi-row 한 문장).
+public final class ZES_RealTimeBatch
+{
+    private ZES_RealTimeBatch() {}
+
+    // DB 장애면 spill log에 남기고(ZES_SpillLog), 그 밖의 오류면 문제 있는 프레임만 실패하도록 한 건씩 다시 저장한다
+    public static void ZES_save(List<? extends ZES_TypeMysqlDB> frames)
+    {
+        if (frames.isEmpty())
+        {
+            return;
+        }
+        if (frames.size() == 1)
+        {
+            frames.get(0).ZES_saveRealTime();
+            return;
+        }
+        // spill log에 replay 할 프레임이 남아 있는 설비는 한 건씩 spill 되고, 나머지만 batch로 저장한다
+        List<ZES_TypeMysqlDB> ZES_lv_direct = new ArrayList<>(frames.size());
+        for (ZES_TypeMysqlDB ZES_lv_frame : frames)
+        {
+            if (ZES_SpillLog.ZES_isBacklogged(ZES_lv_frame.ZES_gv_ictId))
+            {
+                ZES_lv_frame.ZES_saveRealTime();
+            }
+            else
+            {
+                ZES_lv_direct.add(ZES_lv_frame);
+            }
+        }
+        if (ZES_lv_direct.size() <= 1)
+        {
+            for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_direct)
+            {
+                ZES_lv_frame.ZES_saveRealTime();
+            }
+            return;
+        }
+        try
+        {
+            ZES_saveOrThrow(ZES_lv_direct);
+        }
+        catch (SQLException e)
+        {
+            if (ZES_SpillLog.ZES_isOutage(e))
+            {
+                int ZES_lv_dropped = 0;
+                for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_direct)
+                {
+                    if (!ZES_lv_frame.ZES_spill())
+                    {
+                        ZES_lv_dropped++;
+                    }
+                }
+                ZES_gv_logger.warning("Batch save of " + ZES_lv_direct.size() + " frames failed, spilled " + (ZES_lv_direct.size() - ZES_lv_dropped) + " (dropped " + ZES_lv_dropped + "): " + e.getMessage());
+                return;
+            }
+            ZES_gv_logger.warning("Batch save of " + ZES_lv_direct.size() + " frames failed, retrying one by one: " + e.getMessage());
+            for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_direct)
+            {
+                ZES_lv_frame.ZES_saveRealTime();
+            }
+        }
+    }
+
+    // 실패하면 rollback 하고 예외를 그대로 던진다 (spill log replay에서 사용)
+    public static void ZES_saveOrThrow(List<? extends ZES_TypeMysqlDB> frames) throws SQLException
+    {
+        if (frames.isEmpty())
+        {
+            return;
+        }
+        if (frames.size() == 1)
+        {
+            frames.get(0).ZES_writeRealTime();
+            return;
+        }
+        ZES_LastStateCache ZES_lv_state = frames.get(0).ZES_state();
+        // 이 batch에서 저장할 설비별 마지막 값. 같은 설비 프레임이 또 있으면 캐시 대신 이 값과 비교한다
+        Map<ZES_IctId, ZES_FrameValues> ZES_lv_saved = new HashMap<>();
+        ZES_SqlSession ZES_lv_session = ZES_SqlSession.ZES_current();
+        try
+        {
+            Connection ZES_lv_conn = ZES_lv_session.ZES_begin();
+            ZES_lv_conn.setAutoCommit(false);
+            try
+            {
+                ZES_execute(ZES_lv_session, frames, ZES_lv_state, ZES_lv_saved);
+                ZES_lv_conn.commit();
+            }
+            catch (SQLException e)
+            {
+                ZES_lv_conn.rollback();
+                throw e;
+            }
+            finally
+            {
+                ZES_lv_conn.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            ZES_lv_session.ZES_release();
+            throw e;
+        }
+        for (Map.Entry<ZES_IctId, ZES_FrameValues> ZES_lv_entry : ZES_lv_saved.entrySet())
+        {
+            ZES_lv_state.ZES_put(ZES_lv_entry.getKey(), ZES_lv_entry.getValue());
+        }
+    }
+
+    private static void ZES_execute(ZES_SqlSession session, List<? extends ZES_TypeMysqlDB> frames, ZES_LastStateCache state, Map<ZES_IctId, ZES_FrameValues> saved) throws SQLException
+    {
+        List<ZES_TypeMysqlDB> ZES_lv_rows = new ArrayList<>();
+        List<ZES_TypeMysqlDB> ZES_lv_updates = new ArrayList<>();
+        // 바뀐 컬럼만 UPDATE 할 설비별 마지막 프레임 (앞 프레임에서 바뀐 컬럼도 합쳐서 한 번만 UPDATE)
+        Map<ZES_IctId, ZES_TypeMysqlDB> ZES_lv_changed = new LinkedHashMap<>();
+        for (ZES_TypeMysqlDB ZES_lv_frame : frames)
+        {
+            ZES_IctId ZES_lv_ictId = ZES_lv_frame.ZES_gv_ictId;
+            boolean ZES_lv_pending = saved.containsKey(ZES_lv_ictId);
+            ZES_FrameValues ZES_lv_stored = ZES_lv_pending ? saved.get(ZES_lv_ictId) : state.ZES_get(ZES_lv_ictId);
+            boolean ZES_lv_known = ZES_lv_pending || ZES_lv_stored != null || state.ZES_isWarmed();
+            int ZES_lv_mode = ZES_lv_known ? ZES_lv_frame.ZES_plan(ZES_lv_stored) : ZES_lv_frame.ZES_plan(session);
+            saved.put(ZES_lv_ictId, ZES_lv_frame.ZES_gv_values);
+            switch (ZES_lv_mode)
+            {
+                case ZES_TypeMysqlDB.ZES_gv_WRITE_SKIP:
+                    break;
+                case ZES_TypeMysqlDB.ZES_gv_WRITE_UPSERT:
+                case ZES_TypeMysqlDB.ZES_gv_WRITE_INSERT:
+                    // 설비별로 INSERT/upsert 행이 UPDATE보다 먼저 오므로, 행을 먼저 실행해도 설비별 순서가 유지된다
+                    ZES_lv_rows.add(ZES_lv_frame);
+                    break;
+                case ZES_TypeMysqlDB.ZES_gv_WRITE_CHANGED:
+                    ZES_TypeMysqlDB ZES_lv_older = ZES_lv_changed.remove(ZES_lv_ictId);
+                    if (ZES_lv_older != null)
+                    {
+                        ZES_lv_frame.ZES_gv_values.ZES_mergeNewValues(ZES_lv_older.ZES_gv_values);
+                    }
+                    ZES_lv_changed.put(ZES_lv_ictId, ZES_lv_frame);
+                    break;
+                default:
+                    ZES_lv_updates.add(ZES_lv_frame);
+                    break;
+            }
+        }
+        if (!ZES_lv_rows.isEmpty())
+        {
+            ZES_TypeMysqlDB ZES_lv_first = ZES_lv_rows.get(0);
+            PreparedStatement ZES_lv_statement = session.ZES_prepare(ZES_SQLGenerator.ZES_gv_UPSERT
+                    ? ZES_SQLGenerator.getUpsertStatement(ZES_lv_first.ZES_gv_values, ZES_lv_first.ZES_tableName())
+                    : ZES_SQLGenerator.getInsertStatement(ZES_lv_first.ZES_gv_values, ZES_lv_first.ZES_tableName()));
+            for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_rows)
+            {
+                ZES_SQLGenerator.bindInsert(ZES_lv_statement, ZES_lv_frame.ZES_gv_values, ZES_lv_frame.ZES_gv_ictNumber, ZES_lv_frame.ZES_gv_timestamp);
+                ZES_lv_statement.addBatch();
+            }
+            ZES_lv_statement.executeBatch();
+        }
+        if (!ZES_lv_updates.isEmpty())
+        {
+            ZES_TypeMysqlDB ZES_lv_first = ZES_lv_updates.get(0);
+            ZES_executeUpdates(session, ZES_SQLGenerator.getUpdateStatement(ZES_lv_first.ZES_gv_values, ZES_lv_first.ZES_tableName()), ZES_lv_updates, false);
+        }
+        if (ZES_lv_changed.isEmpty())
+        {
+            return;
+        }
+        // 바뀐 컬럼 조합(문장)별로 묶는다. 문장 하나의 batch를 끝낸 뒤 다음 문장을 준비하므로 session 캐시에서 밀려나도 안전하다
+        Map<String, List<ZES_TypeMysqlDB>> ZES_lv_groups = new LinkedHashMap<>();
+        for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_changed.values())
+        {
+            ZES_lv_groups.computeIfAbsent(ZES_SQLGenerator.getChangedUpdateStatement(ZES_lv_frame.ZES_gv_values, ZES_lv_frame.ZES_tableName()), sql -> new ArrayList<>()).add(ZES_lv_frame);
+        }
+        List<ZES_TypeMysqlDB> ZES_lv_missing = new ArrayList<>();
+        for (Map.Entry<String, List<ZES_TypeMysqlDB>> ZES_lv_group : ZES_lv_groups.entrySet())
+        {
+            ZES_lv_missing.addAll(ZES_executeUpdates(session, ZES_lv_group.getKey(), ZES_lv_group.getValue(), true));
+        }
+        // 바뀐 컬럼만 UPDATE 했는데 행이 없으면(0건) 전체 컬럼으로 다시 저장한다
+        for (ZES_TypeMysqlDB ZES_lv_frame : ZES_lv_missing)
+        {
+            ZES_lv_frame.ZES_write(session, ZES_TypeMysqlDB.ZES_fullWriteMode());
+        }
+    }
+
+    // 같은 문장의 UPDATE를 batch로 실행하고, 행이 없었던(0건) 프레임을 돌려준다
+    private static List<ZES_TypeMysqlDB> ZES_executeUpdates(ZES_SqlSession session, String sql, List<ZES_TypeMysqlDB> frames, boolean changedOnly) throws SQLException
+    {
+        PreparedStatement ZES_lv_statement = session.ZES_prepare(sql);
+        for (ZES_TypeMysqlDB ZES_lv_frame : frames)
+        {
+            ZES_SQLGenerator.bindUpdate(ZES_lv_statement, ZES_lv_frame.ZES_gv_values, ZES_lv_frame.ZES_gv_ictNumber, ZES_lv_frame.ZES_gv_timestamp, changedOnly);
+            ZES_lv_statement.addBatch();
+        }
+        int[] ZES_lv_counts = ZES_lv_statement.executeBatch();
+        List<ZES_TypeMysqlDB> ZES_lv_missing = new ArrayList<>();
+        for (int i = 0; i < ZES_lv_counts.length; i++)
+        {
+            if (ZES_lv_counts[i] == 0)
+            {
+                ZES_lv_missing.add(frames.get(i));
+            }
+        }
+        return ZES_lv_missing;
+    }
+}
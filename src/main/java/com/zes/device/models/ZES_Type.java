@@ -9,52 +9,47 @@ public abstract class ZES_Type
 {
     protected final long ZES_gv_timestamp;
     protected final byte[] ZES_gv_bytes;
-    public String ZES_gv_ictNumber;
-    protected Boolean ZES_gv_hasAnyNewValue = null;
+    public final ZES_IctId ZES_gv_ictId;
+    public final String ZES_gv_ictNumber;
     protected boolean ZES_gv_hasPrevData = false;
-    protected abstract void ZES_parseData(ZES_Data data, ResultSet resultSet) throws SQLException;
+    // decode 결과와 변경 여부는 프레임마다 따로 가지므로 같은 타입을 여러 스레드에서 동시에 저장해도 된다
+    protected ZES_FrameValues ZES_gv_values;
+    // index번째 값이 DB에 저장된 이전 값과 다른지 확인
+    protected abstract void ZES_parseData(int index, ZES_Data data, ResultSet resultSet) throws SQLException;
 
     abstract public ZES_Type ZES_saveRealTime() throws SQLException;
 
-    public ZES_Type(long timestamp, byte[] bytes, String ictNumber)
+    protected abstract ZES_FrameLayout ZES_layout();
+
+    public ZES_Type(long timestamp, byte[] bytes, ZES_IctId ictId)
     {
         this.ZES_gv_timestamp = timestamp;
-        this.ZES_gv_bytes = bytes.clone(); // Create a defensive copy of the byte array
-        this.ZES_gv_ictNumber = ictNumber;
+        // 복사하지 않는다. 호출하는 쪽(ZES_Pipeline.ZES_submit, spill replay)이 프레임마다 새 배열을 넘겨준다
+        this.ZES_gv_bytes = bytes;
+        this.ZES_gv_ictId = ictId;
+        this.ZES_gv_ictNumber = ictId.toString();
     }
 
-    static long ZES_getLong(byte[] bytes, int offset, int size)
+    // decode 단계에서 호출. 같은 설비의 직전 프레임 값이 있으면 바뀐 필드만 decode 한다.
+    public ZES_FrameValues ZES_decode(ZES_FrameValues previous)
     {
-        return ZES_convertByteArrayToLong(bytes, offset, size);
+        ZES_gv_values = previous == null ? new ZES_FrameValues(ZES_layout(), ZES_gv_bytes) : new ZES_FrameValues(previous, ZES_gv_bytes);
+        return ZES_gv_values;
     }
 
-    static double ZES_getDouble(byte[] bytes, int offset, int delimitSize)
+    public ZES_FrameValues ZES_getValues()
     {
-        int ZES_lv_intSize = 4 - delimitSize;
-        long ZES_lv_intValue = ZES_convertByteArrayToLong(bytes, offset, ZES_lv_intSize);
-        if(delimitSize == 0)
-        {
-            return (double) ZES_lv_intValue / 100;
-        }
-        else
-        {
-            long ZES_lv_fractionValue = ZES_convertByteArrayToLong(bytes, offset + ZES_lv_intSize, delimitSize);
-            return Double.parseDouble(ZES_lv_intValue + "." + ZES_lv_fractionValue);
-        }
+        return ZES_gv_values;
     }
 
-    static String ZES_getTime(byte[] bytes, int offset)
+    public long ZES_getTimestamp()
     {
-        long ZES_lv_hour = ZES_convertByteArrayToLong(bytes, offset, 2);
-        long ZES_lv_min = ZES_convertByteArrayToLong(bytes, offset + 2, 2);
-        long ZES_lv_sec = ZES_convertByteArrayToLong(bytes, offset + 4, 2);
-        String[] ZES_lv_time = {ZES_addLeadingZero(ZES_lv_hour), ZES_addLeadingZero(ZES_lv_min), ZES_addLeadingZero(ZES_lv_sec)};
-//        long ZES_lv_milliSec = ZES_convertByteArrayToLong(ZES_gv_bytes, offset + 2, 2);
-        return String.join(":", ZES_lv_time);
+        return ZES_gv_timestamp;
     }
 
-    static String ZES_addLeadingZero(long number) {
-        return String.format("%02d", number);
+    public boolean ZES_hasAnyNewValue()
+    {
+        return ZES_gv_values != null && ZES_gv_values.ZES_hasAnyNewValue();
     }
 
     protected void ZES_handleParseException(Exception e)
@@ -69,18 +64,20 @@ public abstract class ZES_Type
         e.printStackTrace();
     }
 
-    protected void ZES_parse(ZES_Data[] dataMap, ResultSet resultSet)
+    protected void ZES_parse(ZES_FrameLayout layout, ResultSet resultSet)
     {
         try
         {
             ZES_gv_hasPrevData = resultSet != null && resultSet.next();
-            for (ZES_Data data : dataMap)
+            if (ZES_gv_values != null && ZES_gv_values.ZES_isDelta())
+            {
+                // 직전 프레임과 이미 비교했으므로 DB 값과 다시 비교하지 않는다
+                return;
+            }
+            ZES_gv_values = new ZES_FrameValues(layout, ZES_gv_bytes);
+            for (int i = 0; i < layout.ZES_size(); i++)
             {
-                ZES_parseData(data, resultSet);
-                if (ZES_gv_hasAnyNewValue == null || !ZES_gv_hasAnyNewValue)
-                {
-                    ZES_gv_hasAnyNewValue = data.isNewValue();
-                }
+                ZES_parseData(i, layout.ZES_field(i), resultSet);
             }
         }
         catch (Exception e)
@@ -1,7 +1,8 @@
 package com.zes.device.models;
 
-import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
+import com.zes.device.ZES_SQLGenerator;
+import com.zes.device.ZES_SpillLog;
+import com.zes.device.ZES_SqlSession;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,52 +11,251 @@ import static com.zes.device.ZES_SQLGenerator.convertTimestampToDateFormat;
 
 public abstract class ZES_TypeMysqlDB extends ZES_Type
 {
-    protected Point ZES_gv_point;
+    private String ZES_gv_pointType;
     private final String ZES_gv_measurement;
 
-    public ZES_TypeMysqlDB(long timestamp, byte[] bytes, String ictNumber)
+    public ZES_TypeMysqlDB(long timestamp, byte[] bytes, ZES_IctId ictId)
     {
-        super(timestamp, bytes, ictNumber);
+        super(timestamp, bytes, ictId);
         ZES_gv_measurement =  convertTimestampToDateFormat(timestamp, "yyyyMM");
     }
 
     protected void ZES_initPoint(String type)
     {
-        ZES_gv_point = new Point(ZES_gv_measurement)
-                .addTag("ict_number", ZES_gv_ictNumber)
-                .addTag("type", type)
-                .time(ZES_gv_timestamp, WritePrecision.MS);
+        ZES_gv_pointType = type;
+    }
+
+    // 저장 방식 (ZES_plan 결과)
+    static final int ZES_gv_WRITE_SKIP = 0;
+    static final int ZES_gv_WRITE_CHANGED = 1;
+    static final int ZES_gv_WRITE_UPSERT = 2;
+    static final int ZES_gv_WRITE_UPDATE = 3;
+    static final int ZES_gv_WRITE_INSERT = 4;
+
+    // 저장 실패는 안에서 로그로 남긴다
+    @Override
+    public abstract ZES_TypeMysqlDB ZES_saveRealTime();
+
+    protected abstract ZES_LastStateCache ZES_state();
+
+    protected abstract String ZES_tableName();
+
+    // info type (프레임 offset 9). spill log에 남길 때 decoder를 찾는 데 쓴다
+    protected abstract int ZES_infoType();
+
+    // realtime 테이블 저장. DB 장애로 실패하거나 spill log에 이 설비의 replay 할 프레임이 남아 있으면 spill log에 남긴다 (ZES_SpillLog)
+    protected void ZES_persistRealTime()
+    {
+        if (ZES_SpillLog.ZES_isBacklogged(ZES_gv_ictId) && ZES_spill())
+        {
+            return;
+        }
+        try
+        {
+            ZES_writeRealTime();
+        }
+        catch (SQLException e)
+        {
+            if (ZES_SpillLog.ZES_isOutage(e) && ZES_spill())
+            {
+                return;
+            }
+            ZES_parse(ZES_layout(), null);
+            ZES_handleException(e);
+        }
+    }
+
+    // spill log에 원본 프레임을 남긴다. spill이 꺼져 있거나 가득 차면 false
+    public boolean ZES_spill()
+    {
+        return ZES_SpillLog.ZES_append(ZES_infoType(), ZES_gv_timestamp, ZES_gv_ictId, ZES_gv_bytes);
+    }
+
+    // 이전 행 유무와 필드별 변경 여부는 마지막 저장 값(ZES_LastStateCache)으로 정하고,
+    // 캐시로 알 수 없을 때(warm 전이거나 warm 실패)만 SELECT 한다.
+    // zes.storage.upsert=true(기본)면 INSERT ... ON DUPLICATE KEY UPDATE 한 번, 아니면 UPDATE 또는 INSERT.
+    // zes.storage.update=changed면 캐시와 비교한 행은 달라진 컬럼만 UPDATE 한다. 실패하면 예외를 그대로 던진다
+    void ZES_writeRealTime() throws SQLException
+    {
+        ZES_LastStateCache ZES_lv_state = ZES_state();
+        ZES_FrameValues ZES_lv_stored = ZES_lv_state.ZES_get(ZES_gv_ictId);
+        boolean ZES_lv_known = ZES_lv_stored != null || ZES_lv_state.ZES_isWarmed();
+        int ZES_lv_mode = ZES_lv_known ? ZES_plan(ZES_lv_stored) : -1;
+        if (ZES_lv_mode == ZES_gv_WRITE_SKIP)
+        {
+            ZES_lv_state.ZES_put(ZES_gv_ictId, ZES_gv_values);
+            return;
+        }
+        // 저장 스레드에 고정된 connection과 statement를 쓴다 (ZES_SqlSession)
+        ZES_SqlSession ZES_lv_session = ZES_SqlSession.ZES_current();
+        try
+        {
+            ZES_lv_session.ZES_begin();
+            if (!ZES_lv_known)
+            {
+                ZES_lv_mode = ZES_plan(ZES_lv_session);
+            }
+            if (!ZES_write(ZES_lv_session, ZES_lv_mode))
+            {
+                // 행이 지워졌으면(0건) 전체 컬럼으로 다시 저장한다
+                ZES_write(ZES_lv_session, ZES_fullWriteMode());
+            }
+            ZES_lv_state.ZES_put(ZES_gv_ictId, ZES_gv_values);
+        }
+        catch (SQLException e)
+        {
+            // 저장에 실패하면 캐시는 DB에 남아 있는 이전 값을 그대로 가진다. connection은 상태를 알 수 없으므로 새로 잡는다
+            ZES_lv_session.ZES_release();
+            throw e;
+        }
+    }
+
+    // 마지막 저장 값(stored, 행이 없으면 null)과 비교해서 변경 여부를 정하고 저장 방식을 고른다
+    int ZES_plan(ZES_FrameValues stored)
+    {
+        ZES_gv_hasPrevData = stored != null;
+        if (ZES_gv_values == null)
+        {
+            ZES_gv_values = new ZES_FrameValues(ZES_layout(), ZES_gv_bytes);
+        }
+        if (stored != null)
+        {
+            ZES_gv_values.ZES_compareWith(stored);
+        }
+        else
+        {
+            ZES_gv_values.ZES_markAllNew();
+        }
+        if (ZES_SQLGenerator.ZES_gv_CHANGED_ONLY && ZES_gv_hasPrevData)
+        {
+            // 캐시와 비교한 경우에만 변경 여부가 DB 기준이다
+            return ZES_SQLGenerator.ZES_gv_SKIP_UNCHANGED && !ZES_gv_values.ZES_hasAnyNewValue() ? ZES_gv_WRITE_SKIP : ZES_gv_WRITE_CHANGED;
+        }
+        return ZES_SQLGenerator.ZES_gv_UPSERT ? ZES_gv_WRITE_UPSERT : ZES_gv_hasPrevData ? ZES_gv_WRITE_UPDATE : ZES_gv_WRITE_INSERT;
+    }
+
+    // 캐시로 알 수 없을 때. upsert면 SELECT 없이, 아니면 SELECT 해서 이전 행과 비교한다
+    int ZES_plan(ZES_SqlSession session) throws SQLException
+    {
+        if (ZES_SQLGenerator.ZES_gv_UPSERT)
+        {
+            ZES_parse(ZES_layout(), null);
+            return ZES_gv_WRITE_UPSERT;
+        }
+        try (ResultSet ZES_lv_prevResultSet = ZES_SQLGenerator.findByIctNumber(session, ZES_gv_ictNumber, ZES_tableName()))
+        {
+            ZES_parse(ZES_layout(), ZES_lv_prevResultSet);
+        }
+        return ZES_gv_hasPrevData ? ZES_gv_WRITE_UPDATE : ZES_gv_WRITE_INSERT;
+    }
+
+    static int ZES_fullWriteMode()
+    {
+        return ZES_SQLGenerator.ZES_gv_UPSERT ? ZES_gv_WRITE_UPSERT : ZES_gv_WRITE_INSERT;
+    }
+
+    // CHANGED인데 행이 없으면(0건) false
+    boolean ZES_write(ZES_SqlSession session, int mode) throws SQLException
+    {
+        switch (mode)
+        {
+            case ZES_gv_WRITE_CHANGED:
+                return ZES_SQLGenerator.updateChanged(session, ZES_gv_values, ZES_tableName(), ZES_gv_ictNumber, ZES_gv_timestamp) > 0;
+            case ZES_gv_WRITE_UPSERT:
+                ZES_SQLGenerator.upsert(session, ZES_gv_values, ZES_gv_ictNumber, ZES_tableName(), ZES_gv_timestamp);
+                return true;
+            case ZES_gv_WRITE_UPDATE:
+                ZES_SQLGenerator.update(session, ZES_gv_values, ZES_tableName(), ZES_gv_ictNumber, ZES_gv_timestamp);
+                return true;
+            case ZES_gv_WRITE_INSERT:
+                ZES_SQLGenerator.insert(session, ZES_gv_values, ZES_gv_ictNumber, ZES_tableName(), ZES_gv_timestamp);
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    // realtime 테이블 이름 (이력 테이블 이름은 여기에 접미사를 붙인다)
+    public String ZES_getTableName()
+    {
+        return ZES_tableName();
+    }
+
+    // InfluxDB line protocol 한 줄 (measurement는 yyyyMM, tag는 ict_number와 type, 시각은 ms)
+    public StringBuilder ZES_appendLine(StringBuilder builder, ZES_FrameValues values)
+    {
+        builder.append(ZES_gv_measurement).append(",ict_number=");
+        ZES_appendEscaped(builder, ZES_gv_ictNumber).append(",type=");
+        ZES_appendEscaped(builder, ZES_gv_pointType);
+        char ZES_lv_separator = ' ';
+        for (int i = 0; i < values.ZES_size(); i++)
+        {
+            ZES_Data ZES_lv_data = values.ZES_field(i);
+            switch (ZES_lv_data.ZES_gv_kind)
+            {
+                case ZES_Data.ZES_gv_KIND_DOUBLE:
+                    double ZES_lv_double = values.ZES_getDouble(i);
+                    if (Double.isNaN(ZES_lv_double) || Double.isInfinite(ZES_lv_double))
+                    {
+                        // line protocol은 NaN/Infinity를 받지 않는다
+                        continue;
+                    }
+                    ZES_appendEscaped(builder.append(ZES_lv_separator), ZES_lv_data.ZES_gv_key).append('=').append(ZES_lv_double);
+                    break;
+                case ZES_Data.ZES_gv_KIND_TIME:
+                    // HH:mm:ss 문자열이라 escape 할 문자가 없다
+                    ZES_appendEscaped(builder.append(ZES_lv_separator), ZES_lv_data.ZES_gv_key).append("=\"");
+                    values.ZES_appendValue(builder, i).append('"');
+                    break;
+                default:
+                    ZES_appendEscaped(builder.append(ZES_lv_separator), ZES_lv_data.ZES_gv_key).append('=').append(values.ZES_getLong(i)).append('i');
+                    break;
+            }
+            ZES_lv_separator = ',';
+        }
+        return builder.append(' ').append(ZES_gv_timestamp).append('\n');
+    }
+
+    // tag 값과 field 이름의 쉼표, 공백, = 앞에 \ 를 붙인다
+    private static StringBuilder ZES_appendEscaped(StringBuilder builder, String value)
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            char ZES_lv_char = value.charAt(i);
+            if (ZES_lv_char == ',' || ZES_lv_char == ' ' || ZES_lv_char == '=')
+            {
+                builder.append('\\');
+            }
+            builder.append(ZES_lv_char);
+        }
+        return builder;
     }
 
     @Override
-    protected void ZES_parseData(ZES_Data data, ResultSet resultSet) throws SQLException
+    protected void ZES_parseData(int index, ZES_Data data, ResultSet resultSet) throws SQLException
     {
-        switch (data.ZES_gv_dataType)
+        if (!ZES_gv_hasPrevData)
+        {
+            return;
+        }
+        if (data.ZES_gv_kind == ZES_Data.ZES_gv_KIND_FLAG && !ZES_SQLGenerator.ZES_isFlagColumns())
+        {
+            // flag를 bitmask 컬럼으로 저장하면 필드별 컬럼이 없다
+            return;
+        }
+        boolean ZES_lv_isNew;
+        switch (data.ZES_gv_kind)
         {
-            case "long":
-                data.setValue(ZES_getLong(ZES_gv_bytes, data.ZES_gv_offset, data.ZES_gv_size));
-                ZES_gv_point.addField(data.ZES_gv_key, (long) data.ZES_gv_value);
-                if (ZES_gv_hasPrevData)
-                {
-                    data.setPrevValue(resultSet.getLong(data.ZES_gv_key));
-                }
+            case ZES_Data.ZES_gv_KIND_DOUBLE:
+                ZES_lv_isNew = Double.doubleToLongBits(ZES_gv_values.ZES_getDouble(index)) != Double.doubleToLongBits(resultSet.getDouble(data.ZES_gv_key));
                 break;
-            case "double":
-                data.setValue(ZES_getDouble(ZES_gv_bytes, data.ZES_gv_offset, data.ZES_gv_delimit_size));
-                ZES_gv_point.addField(data.ZES_gv_key, (double) data.ZES_gv_value);
-                if (ZES_gv_hasPrevData)
-                {
-                    data.setPrevValue(resultSet.getDouble(data.ZES_gv_key));
-                }
+            case ZES_Data.ZES_gv_KIND_TIME:
+                ZES_lv_isNew = ZES_gv_values.ZES_getTime(index) != ZES_FrameValues.ZES_parseTime(resultSet.getString(data.ZES_gv_key));
                 break;
-            case "time":
-                data.setValue(ZES_getTime(ZES_gv_bytes, data.ZES_gv_offset));
-                ZES_gv_point.addField(data.ZES_gv_key, data.ZES_gv_value.toString());
-                if (ZES_gv_hasPrevData)
-                {
-                    data.setPrevValue(resultSet.getString(data.ZES_gv_key));
-                }
+            default:
+                ZES_lv_isNew = ZES_gv_values.ZES_getLong(index) != resultSet.getLong(data.ZES_gv_key);
                 break;
         }
+        ZES_gv_values.ZES_setNewValue(index, ZES_lv_isNew);
     }
 }